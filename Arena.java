@@ -0,0 +1,394 @@
+package ta.tugasakhir;
+
+import java.util.Arrays;
+
+/**
+ * Shared board for networked play: many snakes on one {@link Board}, stepped together by
+ * {@link #tick()}. The rules are those of {@link GameEngine} - walls, rocks and any snake
+ * body kill, food grows the snake - with the snakes moving one after another in player id
+ * order, so a snake entering a cell another snake just moved into dies. A dead snake is
+ * removed from the board and its player can {@link #respawn} it.
+ * <p>
+ * Every tick also leaves a log of what happened in it (spawns, moves with their outcome and
+ * newly placed items), which is all a client needs to follow along from its own copy of the
+ * board; see {@link NetProtocol}.
+ */
+public final class Arena {
+
+    static final int START_LENGTH = 3;
+    static final int FOOD_POINTS = 10;
+    static final int SPECIAL_FOOD_POINTS = 100;
+
+    /**
+     * Move log flags. The low two bits of a move are the direction ordinal.
+     */
+    static final byte ATE = 4;
+    static final byte DIED = 8;
+
+    private static final int MIN_FOODS = 3;
+    private static final int SPAWN_ATTEMPTS = 50;
+
+    private final int width;
+    private final int height;
+    private final int maxPlayers;
+    private final int maxRocks;
+    private final int rockIntervalTicks;
+    private final GameRandom random;
+    private final Board board;
+
+    private final SnakeBody[] snakes;
+    private final boolean[] joined;
+    private final boolean[] alive;
+    private final boolean[] pendingSpawn;
+    private final boolean[] leaving;
+    private final Direction[] currentDirection;
+    private final Direction[] nextDirection;
+    private final int[] score;
+    private int liveCount;
+    private int foodCount;
+    private int specialFoodCount;
+    private int rockCount;
+    private long ticks;
+
+    private final int[] spawnLog;
+    private final int[] spawnHeads;
+    private final byte[] spawnDirections;
+    private int spawnCount;
+    private final int[] moveLog;
+    private final byte[] moveFlags;
+    private int moveCount;
+    private int[] placedLog = new int[16];
+    private int placedCount;
+
+    /**
+     * @param rockIntervalTicks ticks between rock spawns
+     */
+    public Arena(int width, int height, int maxPlayers, int maxRocks, int rockIntervalTicks, long seed) {
+        this.width = width;
+        this.height = height;
+        this.maxPlayers = maxPlayers;
+        this.maxRocks = maxRocks;
+        this.rockIntervalTicks = rockIntervalTicks;
+        this.random = new GameRandom(seed);
+        this.board = new Board(width, height);
+
+        this.snakes = new SnakeBody[maxPlayers];
+        this.joined = new boolean[maxPlayers];
+        this.alive = new boolean[maxPlayers];
+        this.pendingSpawn = new boolean[maxPlayers];
+        this.leaving = new boolean[maxPlayers];
+        this.currentDirection = new Direction[maxPlayers];
+        this.nextDirection = new Direction[maxPlayers];
+        this.score = new int[maxPlayers];
+        this.spawnLog = new int[maxPlayers];
+        this.spawnHeads = new int[maxPlayers];
+        this.spawnDirections = new byte[maxPlayers];
+        this.moveLog = new int[maxPlayers];
+        this.moveFlags = new byte[maxPlayers];
+
+        topUpFoods();
+        placedCount = 0;
+    }
+
+    /**
+     * Takes a free player slot. The snake appears on the next tick.
+     *
+     * @return the player id, or -1 if the arena is full
+     */
+    public int join() {
+        for (int id = 0; id < maxPlayers; id++) {
+            if (!joined[id]) {
+                joined[id] = true;
+                pendingSpawn[id] = true;
+                leaving[id] = false;
+                if (snakes[id] == null) {
+                    snakes[id] = new SnakeBody();
+                }
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Brings a dead player's snake back on the next tick.
+     */
+    public void respawn(int id) {
+        if (joined[id] && !alive[id]) {
+            pendingSpawn[id] = true;
+        }
+    }
+
+    /**
+     * Frees the player's slot. A live snake is removed on the next tick, as a death.
+     */
+    public void leave(int id) {
+        if (!joined[id]) return;
+        pendingSpawn[id] = false;
+        if (alive[id]) {
+            leaving[id] = true;
+        } else {
+            joined[id] = false;
+        }
+    }
+
+    /**
+     * Queues a direction change for the player's next move. Reversing is ignored.
+     */
+    public void steer(int id, Direction direction) {
+        if (alive[id] && direction != currentDirection[id].opposite()) {
+            nextDirection[id] = direction;
+        }
+    }
+
+    public void tick() {
+        spawnCount = 0;
+        moveCount = 0;
+        placedCount = 0;
+
+        for (int id = 0; id < maxPlayers; id++) {
+            if (pendingSpawn[id] && spawn(id)) {
+                pendingSpawn[id] = false;
+                spawnLog[spawnCount] = id;
+                spawnHeads[spawnCount] = snakes[id].head();
+                spawnDirections[spawnCount++] = (byte) currentDirection[id].ordinal();
+            }
+        }
+
+        for (int id = 0; id < maxPlayers; id++) {
+            if (alive[id]) {
+                moveLog[moveCount] = id;
+                moveFlags[moveCount++] = move(id);
+            }
+        }
+
+        topUpFoods();
+        ticks++;
+        if (rockIntervalTicks > 0 && ticks % rockIntervalTicks == 0) {
+            spawnRock();
+        }
+    }
+
+    private byte move(int id) {
+        SnakeBody snake = snakes[id];
+        Direction direction = currentDirection[id] = nextDirection[id];
+        byte flags = (byte) direction.ordinal();
+
+        int head = snake.head();
+        int x = head % width + direction.dx;
+        int y = head / width + direction.dy;
+        if (leaving[id] || board.isBlocked(x, y)) {
+            kill(id);
+            return (byte) (flags | DIED);
+        }
+
+        byte kind = board.get(x, y);
+        board.markDirty(head);
+        snake.pushHead(board.index(x, y));
+        board.set(x, y, Board.SNAKE);
+
+        if (Board.isFood(kind)) {
+            if (kind == Board.SPECIAL_FOOD) {
+                score[id] += SPECIAL_FOOD_POINTS;
+                specialFoodCount--;
+            } else {
+                score[id] += FOOD_POINTS;
+                foodCount--;
+            }
+            return (byte) (flags | ATE);
+        }
+
+        int tail = snake.popTail();
+        board.set(tail % width, tail / width, Board.EMPTY);
+        board.markDirty(snake.tail());
+        return flags;
+    }
+
+    private void kill(int id) {
+        SnakeBody snake = snakes[id];
+        for (int i = 0; i < snake.size(); i++) {
+            int cell = snake.get(i);
+            board.set(cell % width, cell / width, Board.EMPTY);
+        }
+        snake.clear();
+        alive[id] = false;
+        liveCount--;
+        if (leaving[id]) {
+            leaving[id] = false;
+            joined[id] = false;
+        }
+    }
+
+    /**
+     * Places a new snake on a random free stretch, facing the middle of the board, with a
+     * few free cells ahead of it so it does not die on its first move.
+     */
+    private boolean spawn(int id) {
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            int cell = board.randomFreeCell(random);
+            if (cell < 0) return false;
+
+            int x = cell % width;
+            int y = cell / width;
+            Direction direction = x < width / 2 ? Direction.RIGHT : Direction.LEFT;
+            if (!isClearLine(x, y, direction)) continue;
+
+            SnakeBody snake = snakes[id];
+            snake.clear();
+            for (int i = 0; i < START_LENGTH; i++) {
+                int sx = x - direction.dx * i;
+                snake.addTail(board.index(sx, y));
+                board.set(sx, y, Board.SNAKE);
+            }
+            currentDirection[id] = direction;
+            nextDirection[id] = direction;
+            score[id] = 0;
+            alive[id] = true;
+            liveCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isClearLine(int x, int y, Direction direction) {
+        for (int i = -START_LENGTH; i < START_LENGTH; i++) {
+            int cx = x + direction.dx * i;
+            if (!board.inBounds(cx, y) || !board.isEmpty(cx, y)) return false;
+        }
+        return true;
+    }
+
+    private void topUpFoods() {
+        while (foodCount < MIN_FOODS + liveCount && place(Board.FOOD)) {
+            foodCount++;
+        }
+        if (specialFoodCount == 0 && place(Board.SPECIAL_FOOD)) {
+            specialFoodCount++;
+        }
+    }
+
+    private boolean place(byte kind) {
+        int cell = board.randomFreeCell(random);
+        if (cell < 0) return false;
+
+        board.set(cell % width, cell / width, kind);
+        logPlaced(cell);
+        return true;
+    }
+
+    private void spawnRock() {
+        if (rockCount >= maxRocks) return;
+
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            int cell = board.randomFreeCell(random);
+            if (cell < 0) return;
+
+            int x = cell % width;
+            int y = cell / width;
+            if (!isNextToSnake(x, y)) {
+                board.set(x, y, Board.ROCK);
+                logPlaced(cell);
+                rockCount++;
+                return;
+            }
+        }
+    }
+
+    private boolean isNextToSnake(int x, int y) {
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                if (board.get(nx, ny) == Board.SNAKE) return true;
+            }
+        }
+        return false;
+    }
+
+    private void logPlaced(int cell) {
+        if (placedCount == placedLog.length) {
+            placedLog = Arrays.copyOf(placedLog, placedCount * 2);
+        }
+        placedLog[placedCount++] = cell;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    public boolean isAlive(int id) {
+        return alive[id];
+    }
+
+    public int getScore(int id) {
+        return score[id];
+    }
+
+    public Direction getDirection(int id) {
+        return currentDirection[id];
+    }
+
+    Board getBoard() {
+        return board;
+    }
+
+    SnakeBody getSnake(int id) {
+        return snakes[id];
+    }
+
+    int spawnCount() {
+        return spawnCount;
+    }
+
+    int spawnedId(int i) {
+        return spawnLog[i];
+    }
+
+    /**
+     * Where the i-th snake of the last tick appeared, before it made its first move.
+     */
+    int spawnedHead(int i) {
+        return spawnHeads[i];
+    }
+
+    byte spawnedDirection(int i) {
+        return spawnDirections[i];
+    }
+
+    int moveCount() {
+        return moveCount;
+    }
+
+    int movedId(int i) {
+        return moveLog[i];
+    }
+
+    byte moveFlags(int i) {
+        return moveFlags[i];
+    }
+
+    int placedCount() {
+        return placedCount;
+    }
+
+    /**
+     * Cells that received a food or rock on the last tick, in placement order.
+     */
+    int placedCell(int i) {
+        return placedLog[i];
+    }
+}
@@ -0,0 +1,418 @@
+package ta.tugasakhir;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Pathfinding bot. Each tick it runs a breadth-first search from the head over the occupancy
+ * grid, goes for the food with the best points-per-step, and only takes that route if the
+ * snake still has room afterwards. Otherwise it follows its own tail, and as a last resort
+ * moves towards the largest open area.
+ * <p>
+ * The route to the chosen food is kept and followed on later ticks without searching again.
+ * Eating or spawning food throws the plan away; a new rock only matters if it lands on the
+ * remaining route, in which case the plan is repaired by searching from the head to the
+ * nearest unblocked cell further along it instead of replanning from scratch.
+ * <p>
+ * All searches run on reused primitive buffers (visit stamps instead of clearing), so a
+ * decision allocates nothing.
+ */
+public final class Autopilot implements Policy {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private int[] visited = new int[0];
+    private int[] parent = new int[0];
+    private int[] queue = new int[0];
+    private int generation;
+    private int mostFoodPoints;
+    private final Consumer<Point> mostPoints = food -> mostFoodPoints = Math.max(mostFoodPoints, food.points);
+
+    private final boolean cachePlans;
+    private int[] plan = new int[0];
+    private int planLength;
+    private int planPosition;
+    private int planStart;
+    private GameEngine planGame;
+    private int planFoodChanges;
+    private int planRockChanges;
+
+    private long cacheHits;
+    private long cacheMisses;
+    private long repairs;
+
+    public Autopilot() {
+        this(true);
+    }
+
+    /**
+     * @param cachePlans false to search from scratch every tick, for comparison
+     */
+    public Autopilot(boolean cachePlans) {
+        this.cachePlans = cachePlans;
+    }
+
+    @Override
+    public Direction nextDirection(GameEngine game) {
+        Board board = game.getBoard();
+        SnakeBody snake = game.getSnake();
+        ensureCapacity(board.width * board.height);
+
+        int head = snake.head();
+        Direction toFood = cachePlans ? cachedStep(game, head) : null;
+        if (toFood == null) {
+            cacheMisses++;
+            toFood = replan(game, head);
+        }
+        if (toFood != null && hasRoom(game, toFood)) {
+            return toFood;
+        }
+
+        Direction toTail = followTail(game);
+        if (toTail != null) {
+            return toTail;
+        }
+
+        return mostSpace(game);
+    }
+
+    private void ensureCapacity(int cells) {
+        if (visited.length != cells) {
+            visited = new int[cells];
+            parent = new int[cells];
+            queue = new int[cells];
+            plan = new int[cells];
+            planGame = null;
+            generation = 0;
+        }
+    }
+
+    /**
+     * Next step of the cached plan, or null if there is no usable plan: the snake left it,
+     * reached its end, or the food on the board changed.
+     */
+    private Direction cachedStep(GameEngine game, int head) {
+        if (planGame != game || planPosition >= planLength) return null;
+        if ((planPosition == 0 ? planStart : plan[planPosition - 1]) != head) return null;
+        if (planFoodChanges != game.getFoodChanges()) return null;
+
+        Board board = game.getBoard();
+        if (planRockChanges != game.getRockChanges()) {
+            planRockChanges = game.getRockChanges();
+            int lastBlocked = -1;
+            for (int i = planPosition; i < planLength; i++) {
+                if (board.isBlocked(plan[i] % board.width, plan[i] / board.width)) {
+                    lastBlocked = i;
+                }
+            }
+            if (lastBlocked >= 0) {
+                if (lastBlocked == planLength - 1 || !repair(board, head, lastBlocked)) return null;
+                repairs++;
+            }
+        }
+
+        cacheHits++;
+        return directionBetween(board.width, head, plan[planPosition++]);
+    }
+
+    private Direction replan(GameEngine game, int head) {
+        Board board = game.getBoard();
+        int target = findBestFood(board, game.getFoodIndex(), head);
+        if (target < 0) {
+            planGame = null;
+            return null;
+        }
+
+        int length = 0;
+        for (int cell = target; cell != head; cell = parent[cell]) {
+            length++;
+        }
+        for (int cell = target, i = length - 1; cell != head; cell = parent[cell], i--) {
+            plan[i] = cell;
+        }
+        planLength = length;
+        planPosition = 0;
+        planStart = head;
+        planGame = game;
+        planFoodChanges = game.getFoodChanges();
+        planRockChanges = game.getRockChanges();
+
+        return directionBetween(board.width, head, plan[planPosition++]);
+    }
+
+    /**
+     * Replaces the part of the plan up to {@code lastBlocked} with a detour: a BFS from the
+     * head that stops at the first cell of the plan beyond the blockage.
+     */
+    private boolean repair(Board board, int head, int lastBlocked) {
+        int width = board.width;
+        int suffix = nextGeneration();
+        for (int i = lastBlocked + 1; i < planLength; i++) {
+            visited[plan[i]] = suffix;
+            parent[plan[i]] = i;
+        }
+
+        int stamp = nextGeneration();
+        int headIndex = 0;
+        int tailIndex = 0;
+        visited[head] = stamp;
+        queue[tailIndex++] = head;
+
+        while (headIndex < tailIndex) {
+            int cell = queue[headIndex++];
+            int x = cell % width;
+            int y = cell / width;
+
+            for (Direction direction : DIRECTIONS) {
+                int nx = x + direction.dx;
+                int ny = y + direction.dy;
+                if (board.isBlocked(nx, ny)) continue;
+
+                int next = ny * width + nx;
+                if (visited[next] == suffix) {
+                    splice(head, cell, next, parent[next]);
+                    return true;
+                }
+                if (visited[next] == stamp) continue;
+                visited[next] = stamp;
+                parent[next] = cell;
+                queue[tailIndex++] = next;
+            }
+        }
+        return false;
+    }
+
+    private void splice(int head, int detourEnd, int rejoin, int rejoinIndex) {
+        int detour = 1;
+        for (int cell = detourEnd; cell != head; cell = parent[cell]) {
+            detour++;
+        }
+        int rest = planLength - rejoinIndex - 1;
+        System.arraycopy(plan, rejoinIndex + 1, plan, detour, rest);
+
+        plan[detour - 1] = rejoin;
+        for (int cell = detourEnd, i = detour - 2; cell != head; cell = parent[cell], i--) {
+            plan[i] = cell;
+        }
+        planLength = detour + rest;
+        planPosition = 0;
+        planStart = head;
+    }
+
+    private int nextGeneration() {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+        return generation;
+    }
+
+    /**
+     * BFS from the head; returns the food cell with the most points per step, or -1 when
+     * no food is reachable. Parents are left in {@link #parent} for {@link #replan}
+     * to walk back into a plan.
+     */
+    private int findBestFood(Board board, ChunkIndex foods, int head) {
+        int width = board.width;
+        mostFoodPoints = 0;
+        foods.forEach(mostPoints);
+        int stamp = nextGeneration();
+        int headIndex = 0;
+        int tailIndex = 0;
+
+        visited[head] = stamp;
+        parent[head] = -1;
+        queue[tailIndex++] = head;
+
+        int best = -1;
+        double bestValue = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        int level = 0;
+        int levelEnd = tailIndex;
+
+        while (headIndex < tailIndex) {
+            if (headIndex == levelEnd) {
+                level++;
+                levelEnd = tailIndex;
+                // nothing further away can beat the food already found this close
+                if (best >= 0 && (double) mostFoodPoints / level <= bestValue) break;
+            }
+            int cell = queue[headIndex++];
+            int x = cell % width;
+            int y = cell / width;
+
+            for (Direction direction : DIRECTIONS) {
+                int nx = x + direction.dx;
+                int ny = y + direction.dy;
+                if (board.isBlocked(nx, ny)) continue;
+
+                int next = ny * width + nx;
+                if (visited[next] == stamp) continue;
+                visited[next] = stamp;
+                parent[next] = cell;
+                queue[tailIndex++] = next;
+
+                if (Board.isFood(board.get(nx, ny))) {
+                    int steps = level + 1;
+                    double value = (double) foods.get(nx, ny).points / steps;
+                    if (value > bestValue || (value == bestValue && steps < bestDistance)) {
+                        best = next;
+                        bestValue = value;
+                        bestDistance = steps;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Decisions that needed a full search, because there was no usable plan.
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Plans fixed up locally after a rock landed on them.
+     */
+    public long getRepairs() {
+        return repairs;
+    }
+
+    private Direction firstStep(Board board, int head, int target) {
+        int cell = target;
+        while (parent[cell] != head) {
+            cell = parent[cell];
+        }
+        return directionBetween(board.width, head, cell);
+    }
+
+    private static Direction directionBetween(int width, int from, int to) {
+        int dx = to % width - from % width;
+        int dy = to / width - from / width;
+        for (Direction direction : DIRECTIONS) {
+            if (direction.dx == dx && direction.dy == dy) return direction;
+        }
+        throw new IllegalArgumentException("Cells " + from + " and " + to + " are not adjacent");
+    }
+
+    /**
+     * A move is considered safe if, after making it, the snake can reach at least as many
+     * cells as it is long, or can still reach the cell its tail is leaving.
+     */
+    private boolean hasRoom(GameEngine game, Direction direction) {
+        if (game.wouldCollide(direction)) return false;
+
+        SnakeBody snake = game.getSnake();
+        int width = game.getWidth();
+        int head = snake.head();
+        int start = (head / width + direction.dy) * width + head % width + direction.dx;
+        return floodFill(game.getBoard(), start, snake.tail(), snake.size()) >= snake.size();
+    }
+
+    /**
+     * Counts cells reachable from {@code start}, stopping early at {@code limit}. Reaching the
+     * tail counts as unlimited room, since the tail keeps moving away.
+     */
+    private int floodFill(Board board, int start, int tail, int limit) {
+        int width = board.width;
+        int stamp = nextGeneration();
+        int headIndex = 0;
+        int tailIndex = 0;
+        visited[start] = stamp;
+        queue[tailIndex++] = start;
+
+        while (headIndex < tailIndex) {
+            int cell = queue[headIndex++];
+            int x = cell % width;
+            int y = cell / width;
+
+            for (Direction direction : DIRECTIONS) {
+                int nx = x + direction.dx;
+                int ny = y + direction.dy;
+                if (!board.inBounds(nx, ny)) continue;
+
+                int next = ny * width + nx;
+                if (next == tail && cell != start) return Integer.MAX_VALUE;
+                if (board.isBlocked(nx, ny) || visited[next] == stamp) continue;
+
+                visited[next] = stamp;
+                queue[tailIndex++] = next;
+                if (tailIndex >= limit) return tailIndex;
+            }
+        }
+        return tailIndex;
+    }
+
+    /**
+     * BFS from the head to the tail cell, which will have moved on by the time the snake
+     * gets there. Returns null when the tail is unreachable or the first step collides.
+     */
+    private Direction followTail(GameEngine game) {
+        Board board = game.getBoard();
+        SnakeBody snake = game.getSnake();
+        if (snake.size() < 3) return null;
+
+        int width = board.width;
+        int head = snake.head();
+        int tail = snake.tail();
+        int stamp = nextGeneration();
+        int headIndex = 0;
+        int tailIndex = 0;
+        visited[head] = stamp;
+        parent[head] = -1;
+        queue[tailIndex++] = head;
+
+        while (headIndex < tailIndex) {
+            int cell = queue[headIndex++];
+            int x = cell % width;
+            int y = cell / width;
+
+            for (Direction direction : DIRECTIONS) {
+                int nx = x + direction.dx;
+                int ny = y + direction.dy;
+                if (!board.inBounds(nx, ny)) continue;
+
+                int next = ny * width + nx;
+                if (visited[next] == stamp) continue;
+                if (next == tail) {
+                    parent[next] = cell;
+                    Direction step = firstStep(board, head, next);
+                    return game.wouldCollide(step) ? null : step;
+                }
+                if (board.isBlocked(nx, ny)) continue;
+
+                visited[next] = stamp;
+                parent[next] = cell;
+                queue[tailIndex++] = next;
+            }
+        }
+        return null;
+    }
+
+    private Direction mostSpace(GameEngine game) {
+        SnakeBody snake = game.getSnake();
+        int width = game.getWidth();
+        int head = snake.head();
+        int cells = game.getWidth() * game.getHeight();
+
+        Direction best = game.getCurrentDirection();
+        int bestSpace = -1;
+        for (Direction direction : DIRECTIONS) {
+            if (game.wouldCollide(direction)) continue;
+
+            int start = (head / width + direction.dy) * width + head % width + direction.dx;
+            int space = floodFill(game.getBoard(), start, -1, cells);
+            if (space > bestSpace) {
+                best = direction;
+                bestSpace = space;
+            }
+        }
+        return best;
+    }
+}
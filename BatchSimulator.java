@@ -0,0 +1,305 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Plays many independent headless games in parallel on a work-stealing pool. Every game has
+ * its own seed, engine and policy; workers only share the read-only configuration and write
+ * their results into disjoint slots, so throughput scales with the number of cores.
+ */
+public final class BatchSimulator {
+
+    /**
+     * Games per leaf task. Small enough to balance uneven game lengths across workers.
+     */
+    private static final int GAMES_PER_TASK = 16;
+
+    public static final class GameResult {
+        public final long seed;
+        public final int score;
+        public final int length;
+        public final int foodsEaten;
+        public final long ticks;
+        public final long elapsedMillis;
+
+        GameResult(long seed, int score, int length, int foodsEaten, long ticks, long elapsedMillis) {
+            this.seed = seed;
+            this.score = score;
+            this.length = length;
+            this.foodsEaten = foodsEaten;
+            this.ticks = ticks;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    public static final class Report {
+        public final GameResult[] results;
+        public final long totalTicks;
+        public final long elapsedNanos;
+        public final int threads;
+        private final int[] sortedScores;
+
+        Report(GameResult[] results, long elapsedNanos, int threads) {
+            this.results = results;
+            this.elapsedNanos = elapsedNanos;
+            this.threads = threads;
+
+            long ticks = 0;
+            sortedScores = new int[results.length];
+            for (int i = 0; i < results.length; i++) {
+                ticks += results[i].ticks;
+                sortedScores[i] = results[i].score;
+            }
+            Arrays.sort(sortedScores);
+            this.totalTicks = ticks;
+        }
+
+        public double ticksPerSecond() {
+            return totalTicks * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        public double meanScore() {
+            long sum = 0;
+            for (int score : sortedScores) {
+                sum += score;
+            }
+            return sortedScores.length == 0 ? 0 : (double) sum / sortedScores.length;
+        }
+
+        /**
+         * Score at the given percentile (0-100), nearest-rank.
+         */
+        public int scorePercentile(double percentile) {
+            if (sortedScores.length == 0) return 0;
+            int rank = (int) Math.ceil(percentile / 100.0 * sortedScores.length);
+            return sortedScores[Math.max(0, Math.min(sortedScores.length - 1, rank - 1))];
+        }
+
+        public void print(PrintStream out) {
+            out.printf("games=%d threads=%d ticks=%d elapsed=%.3fs%n",
+                    results.length, threads, totalTicks, elapsedNanos / 1e9);
+            out.printf("throughput: %.0f ticks/s (%.0f ticks/s per thread)%n",
+                    ticksPerSecond(), ticksPerSecond() / threads);
+            out.printf("score: mean=%.1f min=%d p50=%d p90=%d p99=%d max=%d%n",
+                    meanScore(), scorePercentile(0), scorePercentile(50), scorePercentile(90),
+                    scorePercentile(99), scorePercentile(100));
+        }
+
+        public void writeCsv(PrintWriter out) {
+            out.println("seed,score,length,foods_eaten,ticks");
+            for (GameResult result : results) {
+                out.println(Long.toUnsignedString(result.seed) + "," + result.score + ","
+                        + result.length + "," + result.foodsEaten + "," + result.ticks);
+            }
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int maxRocks;
+    private final long maxTicks;
+    private final LongFunction<Policy> policies;
+    private TelemetryLog telemetry;
+    private Consumer<GameEngine> onGameOver;
+
+    /**
+     * @param policies creates the policy for one game from that game's seed
+     * @param maxTicks cap on game length, so a policy that never dies cannot stall a batch
+     */
+    public BatchSimulator(int width, int height, long maxTicks, LongFunction<Policy> policies) {
+        this(width, height, GameEngine.MAX_ROCKS, maxTicks, policies);
+    }
+
+    public BatchSimulator(int width, int height, int maxRocks, long maxTicks, LongFunction<Policy> policies) {
+        this.width = width;
+        this.height = height;
+        this.maxRocks = maxRocks;
+        this.maxTicks = maxTicks;
+        this.policies = policies;
+    }
+
+    /**
+     * Records every tick of every game into {@code telemetry}, shared by all workers.
+     */
+    public void setTelemetry(TelemetryLog telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Hands every finished game to {@code onGameOver}, on the worker that played it and
+     * before its engine is reused for the next game.
+     */
+    public void setOnGameOver(Consumer<GameEngine> onGameOver) {
+        this.onGameOver = onGameOver;
+    }
+
+    public Report run(int games, long baseSeed, int threads) {
+        GameResult[] results = new GameResult[games];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new GamesTask(results, baseSeed, 0, games));
+        } finally {
+            pool.shutdown();
+        }
+        return new Report(results, System.nanoTime() - start, threads);
+    }
+
+    /**
+     * Seed of the i-th game in a batch, decorrelated from its neighbours.
+     */
+    static long gameSeed(long baseSeed, int index) {
+        return new GameRandom(baseSeed + index * 0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    private final class GamesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final GameResult[] results;
+        private final long baseSeed;
+        private final int from;
+        private final int to;
+
+        GamesTask(GameResult[] results, long baseSeed, int from, int to) {
+            this.results = results;
+            this.baseSeed = baseSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GamesTask(results, baseSeed, from, mid),
+                        new GamesTask(results, baseSeed, mid, to));
+                return;
+            }
+
+            GameEngine engine = null;
+            for (int i = from; i < to; i++) {
+                long seed = gameSeed(baseSeed, i);
+                if (engine == null) {
+                    engine = new GameEngine(width, height, seed, maxRocks);
+                } else {
+                    engine.reset(seed);
+                }
+                results[i] = play(engine, policies.apply(seed));
+            }
+        }
+    }
+
+    private GameResult play(GameEngine engine, Policy policy) {
+        TelemetryRecorder recorder = telemetry != null ? new TelemetryRecorder(telemetry, engine) : null;
+        while (engine.getTicks() < maxTicks) {
+            engine.steer(policy.nextDirection(engine));
+            if (recorder == null) {
+                if (!engine.tick()) break;
+            } else {
+                recorder.beforeTick();
+                boolean alive = engine.tick();
+                recorder.afterTick(alive);
+                if (!alive) break;
+            }
+        }
+        if (onGameOver != null) {
+            onGameOver.accept(engine);
+        }
+        return new GameResult(engine.getSeed(), engine.getScore(), engine.getSnake().size(),
+                engine.getFoodsEaten(), engine.getTicks(), engine.getElapsedMillis());
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: BatchSimulator [--games=N] [--seed=S] [--threads=N] "
+                        + "[--width=W] [--height=H] [--max-rocks=R] [--max-ticks=T] "
+                        + "[--policy=wander|autopilot|neural|mcts] [--genome=file] [--rollouts=N] "
+                        + "[--csv=file] [--telemetry=file] [--leaderboard=file]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        int games = Integer.parseInt(options.getOrDefault("games", "10000"));
+        int width = Integer.parseInt(options.getOrDefault("width", "20"));
+        int height = Integer.parseInt(options.getOrDefault("height", "15"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        int maxRocks = Integer.parseInt(options.getOrDefault("max-rocks", String.valueOf(GameEngine.MAX_ROCKS)));
+        long maxTicks = Long.parseLong(options.getOrDefault("max-ticks", "100000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        String policy = options.getOrDefault("policy", "wander");
+        LongFunction<Policy> policies;
+        if (policy.equals("wander")) {
+            policies = WanderPolicy::new;
+        } else if (policy.equals("autopilot")) {
+            policies = ignored -> new Autopilot();
+        } else if (policy.equals("neural")) {
+            EvolutionTrainer.Checkpoint trained = EvolutionTrainer.Checkpoint.load(
+                    Paths.get(options.getOrDefault("genome", EvolutionTrainer.DEFAULT_CHECKPOINT)));
+            policies = ignored -> new NeuralPolicy(trained.hidden, trained.best);
+        } else if (policy.equals("mcts")) {
+            // games already run in parallel, so each planner searches on its game's thread only.
+            // A worker plays its games one after another, so it keeps one planner, trees and
+            // snapshot buffer included, and reseeds it per game, as GamesTask does its engine
+            int rollouts = Integer.parseInt(options.getOrDefault("rollouts", "0"));
+            ThreadLocal<MctsPlanner> planners = ThreadLocal.withInitial(() -> {
+                MctsPlanner planner = new MctsPlanner(MctsPlanner.DEFAULT_BUDGET_NANOS,
+                        MctsPlanner.DEFAULT_HORIZON, 1, 0);
+                planner.setRolloutLimit(rollouts);
+                return planner;
+            });
+            policies = gameSeed -> {
+                MctsPlanner planner = planners.get();
+                planner.reseed(gameSeed);
+                return planner;
+            };
+        } else {
+            throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+
+        BatchSimulator simulator = new BatchSimulator(width, height, maxRocks, maxTicks, policies);
+        TelemetryLog telemetry = null;
+        if (options.containsKey("telemetry")) {
+            telemetry = TelemetryLog.create(Paths.get(options.get("telemetry")));
+            simulator.setTelemetry(telemetry);
+        }
+        Report report = simulator.run(games, seed, threads);
+        report.print(System.out);
+        if (telemetry != null) {
+            telemetry.close();
+            System.out.printf("telemetry: %d records%n", telemetry.getRecordCount());
+        }
+
+        if (options.containsKey("leaderboard")) {
+            long date = System.currentTimeMillis();
+            try (Leaderboard leaderboard = Leaderboard.open(Paths.get(options.get("leaderboard")))) {
+                for (GameResult result : report.results) {
+                    leaderboard.add(result.score, result.length, result.elapsedMillis, result.seed, date);
+                }
+                System.out.printf("leaderboard: %d entries, best %d%n", leaderboard.size(), leaderboard.bestScore());
+            }
+        }
+
+        if (options.containsKey("csv")) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(options.get("csv"))))) {
+                report.writeCsv(out);
+            }
+        }
+    }
+}
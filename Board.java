@@ -0,0 +1,242 @@
+package ta.tugasakhir;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Occupancy grid over the board, one byte per cell. Kept in sync with the snake, foods and
+ * rocks so that collision and spawn checks are a single array lookup instead of list scans.
+ * <p>
+ * Alongside the grid it maintains the set of empty cells as a swap-remove array, so a
+ * uniformly random free cell can be picked in O(1) regardless of how full the board is.
+ * <p>
+ * Every cell that changes is also recorded in a small dirty list so an incremental renderer
+ * can repaint just those cells. If more cells change than the list holds, or the board is
+ * cleared, the whole board is flagged dirty instead.
+ * <p>
+ * While journaling, each {@link #set} is also logged with what it overwrote, so that
+ * {@link #rollBack} can undo a short run of moves in time proportional to the moves rather
+ * than to the board.
+ */
+final class Board {
+
+    static final byte EMPTY = 0;
+    static final byte SNAKE = 1;
+    static final byte ROCK = 2;
+    static final byte FOOD = 3;
+    static final byte SPECIAL_FOOD = 4;
+
+    private static final int DIRTY_CAPACITY = 64;
+
+    final int width;
+    final int height;
+    private final byte[] cells;
+    private final int[] free;
+    private final int[] freeSlot;
+    private int freeCount;
+    private final int[] dirty;
+    private int dirtyCount;
+    private boolean allDirty;
+    /** Cell, previous kind and previous free slot of each logged change. */
+    private int[] journal = new int[3 * DIRTY_CAPACITY];
+    private int journalLength;
+    private boolean journaling;
+
+    Board(int width, int height) {
+        this(width, height, DIRTY_CAPACITY);
+    }
+
+    /**
+     * @param dirtyCapacity changed cells tracked individually between {@link #clearDirty()}
+     *                      calls before the whole board is flagged instead
+     */
+    Board(int width, int height, int dirtyCapacity) {
+        this.width = width;
+        this.height = height;
+        this.dirty = new int[dirtyCapacity];
+        this.cells = new byte[width * height];
+        this.free = new int[width * height];
+        this.freeSlot = new int[width * height];
+        clear();
+    }
+
+    void clear() {
+        Arrays.fill(cells, EMPTY);
+        for (int i = 0; i < free.length; i++) {
+            free[i] = i;
+            freeSlot[i] = i;
+        }
+        freeCount = free.length;
+        dirtyCount = 0;
+        allDirty = true;
+        journaling = false;
+        journalLength = 0;
+    }
+
+    boolean inBounds(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    int index(int x, int y) {
+        return y * width + x;
+    }
+
+    byte get(int x, int y) {
+        return cells[y * width + x];
+    }
+
+    void set(int x, int y, byte kind) {
+        int cell = y * width + x;
+        byte old = cells[cell];
+        if (journaling) {
+            log(cell, old);
+        }
+        cells[cell] = kind;
+        markDirty(cell);
+
+        if (old == EMPTY && kind != EMPTY) {
+            int slot = freeSlot[cell];
+            int last = free[--freeCount];
+            free[slot] = last;
+            freeSlot[last] = slot;
+            freeSlot[cell] = -1;
+        } else if (old != EMPTY && kind == EMPTY) {
+            free[freeCount] = cell;
+            freeSlot[cell] = freeCount++;
+        }
+    }
+
+    private void log(int cell, byte old) {
+        if (journalLength == journal.length) {
+            journal = Arrays.copyOf(journal, journal.length * 2);
+        }
+        journal[journalLength++] = cell;
+        journal[journalLength++] = old;
+        journal[journalLength++] = freeSlot[cell];
+    }
+
+    /**
+     * Starts logging changes for {@link #rollBack}. Clearing the board stops it.
+     */
+    void startJournal() {
+        journaling = true;
+        journalLength = 0;
+    }
+
+    /**
+     * Undoes every change logged since {@link #startJournal} or the last roll back, newest
+     * first, and puts the free cells back in their old order too. Logging carries on.
+     */
+    void rollBack() {
+        while (journalLength > 0) {
+            int slot = journal[--journalLength];
+            byte old = (byte) journal[--journalLength];
+            int cell = journal[--journalLength];
+            byte kind = cells[cell];
+            cells[cell] = old;
+            markDirty(cell);
+
+            if (old == EMPTY && kind != EMPTY) {
+                // set() moved the last free cell into this one's slot; move it back to the end
+                if (slot < freeCount) {
+                    int moved = free[slot];
+                    free[freeCount] = moved;
+                    freeSlot[moved] = freeCount;
+                }
+                freeCount++;
+                free[slot] = cell;
+                freeSlot[cell] = slot;
+            } else if (old != EMPTY && kind == EMPTY) {
+                freeSlot[cell] = -1;
+                freeCount--;
+            }
+        }
+    }
+
+    /**
+     * Flags a cell for repainting without changing its kind, e.g. a snake cell that turns
+     * from head into body.
+     */
+    void markDirty(int cell) {
+        if (allDirty) return;
+        if (dirtyCount == dirty.length) {
+            allDirty = true;
+            return;
+        }
+        dirty[dirtyCount++] = cell;
+    }
+
+    boolean isAllDirty() {
+        return allDirty;
+    }
+
+    int dirtyCount() {
+        return dirtyCount;
+    }
+
+    int dirtyCell(int i) {
+        return dirty[i];
+    }
+
+    void clearDirty() {
+        dirtyCount = 0;
+        allDirty = false;
+    }
+
+    int freeCount() {
+        return freeCount;
+    }
+
+    /**
+     * Writes the free cells in their current order. Spawns pick from that order, so a
+     * restored game only plays on identically if it gets the same one back.
+     */
+    void writeFree(ByteBuffer out) {
+        out.putInt(freeCount);
+        out.asIntBuffer().put(free, 0, freeCount);
+        out.position(out.position() + freeCount * Integer.BYTES);
+    }
+
+    /**
+     * Reorders the free cells as written by {@link #writeFree}. The cells themselves must
+     * already be set to match.
+     */
+    void readFree(ByteBuffer in) {
+        int count = in.getInt();
+        if (count != freeCount) {
+            throw new IllegalArgumentException("Expected " + freeCount + " free cells, got " + count);
+        }
+        in.asIntBuffer().get(free, 0, count);
+        in.position(in.position() + count * Integer.BYTES);
+        for (int i = 0; i < count; i++) {
+            freeSlot[free[i]] = i;
+        }
+    }
+
+    /**
+     * Picks a uniformly random empty cell.
+     *
+     * @return the packed cell index, or -1 if the board is full
+     */
+    int randomFreeCell(GameRandom random) {
+        if (freeCount == 0) return -1;
+        return free[random.nextInt(freeCount)];
+    }
+
+    boolean isEmpty(int x, int y) {
+        return cells[y * width + x] == EMPTY;
+    }
+
+    /**
+     * True for walls, rocks and snake cells - anything that kills the snake.
+     */
+    boolean isBlocked(int x, int y) {
+        if (!inBounds(x, y)) return true;
+        byte kind = cells[y * width + x];
+        return kind == SNAKE || kind == ROCK;
+    }
+
+    static boolean isFood(byte kind) {
+        return kind == FOOD || kind == SPECIAL_FOOD;
+    }
+}
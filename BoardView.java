@@ -0,0 +1,23 @@
+package ta.tugasakhir;
+
+/**
+ * What {@link GameRenderer} needs to draw a board: the occupancy grid with its dirty cells,
+ * plus which snake cells are heads or tails. Implemented for the local {@link GameEngine}
+ * and for the state mirrored from a server by {@link RemoteGame}.
+ */
+interface BoardView {
+
+    Board getBoard();
+
+    /**
+     * Cell the camera follows, normally the player's head.
+     */
+    int getFocusCell();
+
+    /**
+     * @return the direction of the snake whose head is on this cell, or null if no head is
+     */
+    Direction getHeadDirection(int cell);
+
+    boolean isTail(int cell);
+}
@@ -0,0 +1,170 @@
+package ta.tugasakhir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Points on the board bucketed into square chunks of {@link #CHUNK_SIZE} cells. Lookups and
+ * removals only scan the one chunk a cell falls in, so they stay cheap however many points
+ * the board holds.
+ * Drawing does not go through the index: the renderers read the visible cells straight from
+ * the {@link Board} grid.
+ * <p>
+ * Chunks are allocated on first use and keep their storage across {@link #clear()}.
+ * <p>
+ * Like {@link Board}, the index can journal its changes so that {@link #rollBack} undoes a
+ * short run of moves exactly, in time proportional to the moves.
+ */
+final class ChunkIndex {
+
+    static final int CHUNK_SHIFT = 4;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final int chunksX;
+    private final int chunksY;
+    private final Point[][] chunks;
+    private final int[] counts;
+    private int size;
+    /** Added or removed point, and the slot it was removed from or -1 for an add. */
+    private Point[] journalPoints = new Point[16];
+    private int[] journalSlots = new int[16];
+    private int journalLength;
+    private boolean journaling;
+
+    ChunkIndex(int width, int height) {
+        this.chunksX = (width + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        this.chunksY = (height + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        this.chunks = new Point[chunksX * chunksY][];
+        this.counts = new int[chunksX * chunksY];
+    }
+
+    void clear() {
+        journaling = false;
+        journalLength = 0;
+        if (size == 0) return;
+        for (int i = 0; i < chunks.length; i++) {
+            if (counts[i] > 0) {
+                Arrays.fill(chunks[i], 0, counts[i], null);
+                counts[i] = 0;
+            }
+        }
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int chunkOf(int x, int y) {
+        return (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+    }
+
+    void add(Point point) {
+        int chunk = chunkOf(point.x, point.y);
+        Point[] points = chunks[chunk];
+        if (points == null) {
+            points = chunks[chunk] = new Point[4];
+        } else if (counts[chunk] == points.length) {
+            points = chunks[chunk] = Arrays.copyOf(points, points.length * 2);
+        }
+        points[counts[chunk]++] = point;
+        size++;
+        if (journaling) {
+            log(point, -1);
+        }
+    }
+
+    /**
+     * @return the point on the given cell, or null if there is none
+     */
+    Point get(int x, int y) {
+        int chunk = chunkOf(x, y);
+        Point[] points = chunks[chunk];
+        for (int i = 0; i < counts[chunk]; i++) {
+            if (points[i].x == x && points[i].y == y) return points[i];
+        }
+        return null;
+    }
+
+    /**
+     * Removes the point on the given cell by moving the chunk's last point into its slot.
+     *
+     * @return the removed point, or null if there was none
+     */
+    Point remove(int x, int y) {
+        int chunk = chunkOf(x, y);
+        Point[] points = chunks[chunk];
+        for (int i = 0; i < counts[chunk]; i++) {
+            Point point = points[i];
+            if (point.x == x && point.y == y) {
+                int last = --counts[chunk];
+                points[i] = points[last];
+                points[last] = null;
+                size--;
+                if (journaling) {
+                    log(point, i);
+                }
+                return point;
+            }
+        }
+        return null;
+    }
+
+    void forEach(Consumer<Point> action) {
+        if (size == 0) return;
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            Point[] points = chunks[chunk];
+            for (int i = 0; i < counts[chunk]; i++) {
+                action.accept(points[i]);
+            }
+        }
+    }
+
+    private void log(Point point, int slot) {
+        if (journalLength == journalPoints.length) {
+            journalPoints = Arrays.copyOf(journalPoints, journalLength * 2);
+            journalSlots = Arrays.copyOf(journalSlots, journalLength * 2);
+        }
+        journalPoints[journalLength] = point;
+        journalSlots[journalLength++] = slot;
+    }
+
+    /**
+     * Starts logging adds and removes for {@link #rollBack}. Clearing the index stops it.
+     */
+    void startJournal() {
+        journaling = true;
+        journalLength = 0;
+    }
+
+    /**
+     * Undoes every add and remove logged since {@link #startJournal} or the last roll back,
+     * newest first, leaving each chunk in its old order. Logging carries on.
+     */
+    void rollBack() {
+        while (journalLength > 0) {
+            Point point = journalPoints[--journalLength];
+            int slot = journalSlots[journalLength];
+            journalPoints[journalLength] = null;
+            int chunk = chunkOf(point.x, point.y);
+            Point[] points = chunks[chunk];
+            if (slot < 0) {
+                points[--counts[chunk]] = null;
+                size--;
+            } else {
+                // remove() moved the chunk's last point into this slot; move it back
+                points[counts[chunk]++] = points[slot];
+                points[slot] = point;
+                size++;
+            }
+        }
+    }
+
+    List<Point> toList() {
+        List<Point> list = new ArrayList<>(size);
+        forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,22 @@
+package ta.tugasakhir;
+
+public enum Direction {
+    UP(0, -1), DOWN(0, 1), LEFT(-1, 0), RIGHT(1, 0);
+
+    final int dx;
+    final int dy;
+
+    Direction(int dx, int dy) {
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    Direction opposite() {
+        switch (this) {
+            case UP: return DOWN;
+            case DOWN: return UP;
+            case LEFT: return RIGHT;
+            default: return LEFT;
+        }
+    }
+}
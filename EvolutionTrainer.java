@@ -0,0 +1,493 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evolves {@link NeuralPolicy} genomes by playing headless games, one generation at a time.
+ * <p>
+ * Every genome of a generation plays the same games: their seeds come from the base seed
+ * and the generation number only. This makes a run reproducible whatever the thread count,
+ * and it means genomes are compared on equal boards. The workers take genomes off a shared
+ * counter. Each worker keeps one engine and one policy for the whole run, pointed at the
+ * genome in the flat population array, so evaluating allocates nothing per tick. The
+ * engine still creates a point object for each food it places.
+ * <p>
+ * Breeding keeps the best genomes unchanged. Every other genome is the child of two
+ * tournament winners, by uniform crossover, with Gaussian mutation. A {@link Checkpoint}
+ * of the next population is written after each generation, so a run can be resumed; its best
+ * genome plays in {@code BatchSimulator --policy=neural --genome=file}.
+ */
+public final class EvolutionTrainer {
+
+    /**
+     * Fitness rewards food twice: once through the score, which values special food more,
+     * and once per food eaten. The tick term only separates genomes that both starve.
+     */
+    static final double FOOD_WEIGHT = 10;
+    static final double TICK_WEIGHT = 0.01;
+
+    public static final String DEFAULT_CHECKPOINT = "snake.evolution";
+
+    /**
+     * Training settings; the defaults suit the standard 20x15 board.
+     */
+    public static final class Settings {
+        public int hidden = NeuralPolicy.DEFAULT_HIDDEN;
+        public int population = 256;
+        public int gamesPerGenome = 4;
+        public int width = 20;
+        public int height = 15;
+        public int maxRocks = GameEngine.MAX_ROCKS;
+        public long maxTicks = 5_000;
+        /** A game ends after this many ticks without eating. */
+        public int hungerTicks = 300;
+        public int elites = 8;
+        public int tournament = 4;
+        public double mutationRate = 0.1;
+        public double mutationSigma = 0.3;
+        public long seed = 1;
+        public int threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Statistics of one evaluated generation.
+     */
+    public static final class Generation {
+        public final int number;
+        public final double bestFitness;
+        public final double meanFitness;
+        public final int bestScore;
+        public final long games;
+        public final long ticks;
+        public final long elapsedNanos;
+
+        Generation(int number, double bestFitness, double meanFitness, int bestScore, long games,
+                   long ticks, long elapsedNanos) {
+            this.number = number;
+            this.bestFitness = bestFitness;
+            this.meanFitness = meanFitness;
+            this.bestScore = bestScore;
+            this.games = games;
+            this.ticks = ticks;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double gamesPerSecond() {
+            return games * 1e9 / Math.max(1, elapsedNanos);
+        }
+    }
+
+    private final Settings settings;
+    private final int genomeLength;
+    private float[] population;
+    private float[] offspring;
+    private final double[] fitness;
+    private final int[] bestScores;
+    private final float[] best;
+    private double bestFitness = Double.NEGATIVE_INFINITY;
+    private int generation;
+    private final GameRandom random;
+    private final long[] seeds;
+    private final int[] order;
+
+    private final Evaluator[] evaluators;
+    private final ExecutorService workers;
+
+    /**
+     * Starts from a random population.
+     */
+    public EvolutionTrainer(Settings settings) {
+        this(settings, null);
+    }
+
+    private EvolutionTrainer(Settings settings, Checkpoint resume) {
+        if (settings.elites >= settings.population) {
+            throw new IllegalArgumentException("Need more genomes than the " + settings.elites + " elites");
+        }
+        this.settings = settings;
+        this.genomeLength = NeuralPolicy.genomeLength(settings.hidden);
+        this.population = new float[settings.population * genomeLength];
+        this.offspring = new float[population.length];
+        this.fitness = new double[settings.population];
+        this.bestScores = new int[settings.population];
+        this.best = new float[genomeLength];
+        this.seeds = new long[settings.gamesPerGenome];
+        this.order = new int[settings.population];
+
+        if (resume == null) {
+            random = new GameRandom(settings.seed);
+            for (int i = 0; i < population.length; i++) {
+                population[i] = (float) gaussian();
+            }
+        } else {
+            random = new GameRandom(resume.randomState);
+            System.arraycopy(resume.population, 0, population, 0, population.length);
+            System.arraycopy(resume.best, 0, best, 0, genomeLength);
+            bestFitness = resume.bestFitness;
+            generation = resume.generation;
+        }
+
+        evaluators = new Evaluator[settings.threads];
+        for (int i = 0; i < evaluators.length; i++) {
+            evaluators[i] = new Evaluator();
+        }
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(settings.threads, task -> {
+            Thread thread = new Thread(task, "evolution-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Carries on from a checkpoint. The population size and network shape come from the
+     * checkpoint; the other settings may differ from the original run.
+     */
+    public static EvolutionTrainer resume(Settings settings, Checkpoint checkpoint) {
+        settings.population = checkpoint.populationSize;
+        settings.hidden = checkpoint.hidden;
+        settings.seed = checkpoint.seed;
+        return new EvolutionTrainer(settings, checkpoint);
+    }
+
+    /**
+     * Evaluates the current population and breeds the next one from it.
+     */
+    public Generation step() throws InterruptedException {
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = BatchSimulator.gameSeed(settings.seed, generation * settings.gamesPerGenome + i);
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger next = new AtomicInteger();
+        long games = 0;
+        long ticks = 0;
+        Future<?>[] running = new Future<?>[evaluators.length];
+        for (int i = 0; i < evaluators.length; i++) {
+            Evaluator evaluator = evaluators[i];
+            running[i] = workers.submit(() -> evaluator.run(next));
+        }
+        for (int i = 0; i < running.length; i++) {
+            try {
+                running[i].get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Evaluation failed", e.getCause());
+            }
+            games += evaluators[i].games;
+            ticks += evaluators[i].ticks;
+            evaluators[i].games = 0;
+            evaluators[i].ticks = 0;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        rank();
+        double sum = 0;
+        for (double value : fitness) {
+            sum += value;
+        }
+        int champion = order[0];
+        if (fitness[champion] > bestFitness) {
+            bestFitness = fitness[champion];
+            System.arraycopy(population, champion * genomeLength, best, 0, genomeLength);
+        }
+        Generation result = new Generation(generation, fitness[champion], sum / fitness.length,
+                bestScores[champion], games, ticks, elapsed);
+
+        breed();
+        generation++;
+        return result;
+    }
+
+    /**
+     * Fills {@link #order} with genome indexes, fittest first. Ties keep the lower index.
+     */
+    private void rank() {
+        long[] keys = new long[fitness.length];
+        for (int i = 0; i < keys.length; i++) {
+            // fitness is never negative, so its float bits order like the value
+            keys[i] = (long) (Integer.MAX_VALUE - Float.floatToIntBits((float) fitness[i])) << 32 | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+    }
+
+    private void breed() {
+        int elites = settings.elites;
+        for (int i = 0; i < elites; i++) {
+            System.arraycopy(population, order[i] * genomeLength, offspring, i * genomeLength, genomeLength);
+        }
+        for (int child = elites; child < settings.population; child++) {
+            int mother = tournament() * genomeLength;
+            int father = tournament() * genomeLength;
+            int at = child * genomeLength;
+            for (int w = 0; w < genomeLength; w++) {
+                float weight = (random.nextLong() & 1) == 0 ? population[mother + w] : population[father + w];
+                if (random.nextDouble() < settings.mutationRate) {
+                    weight += (float) (gaussian() * settings.mutationSigma);
+                }
+                offspring[at + w] = weight;
+            }
+        }
+        float[] swap = population;
+        population = offspring;
+        offspring = swap;
+    }
+
+    private int tournament() {
+        int winner = random.nextInt(settings.population);
+        for (int i = 1; i < settings.tournament; i++) {
+            int rival = random.nextInt(settings.population);
+            if (fitness[rival] > fitness[winner]) {
+                winner = rival;
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Box-Muller; wasting the second value keeps the generator the only state.
+     */
+    private double gaussian() {
+        double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    static double fitness(GameEngine engine) {
+        return engine.getScore() + FOOD_WEIGHT * engine.getFoodsEaten() + TICK_WEIGHT * engine.getTicks();
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public double getBestFitness() {
+        return bestFitness;
+    }
+
+    /**
+     * Fitness of each genome of the generation the last {@link #step} evaluated, by index.
+     */
+    double[] getFitness() {
+        return fitness.clone();
+    }
+
+    public Checkpoint checkpoint() {
+        return new Checkpoint(settings.hidden, settings.population, generation, settings.seed,
+                random.getState(), bestFitness, best.clone(), population.clone());
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * One worker's engine and policy, reused for every genome it evaluates.
+     */
+    private final class Evaluator {
+        private final GameEngine engine = new GameEngine(settings.width, settings.height, 0, settings.maxRocks);
+        private final NeuralPolicy policy = new NeuralPolicy(settings.hidden);
+        long games;
+        long ticks;
+
+        void run(AtomicInteger next) {
+            int genome;
+            while ((genome = next.getAndIncrement()) < settings.population) {
+                policy.use(population, genome * genomeLength);
+                double total = 0;
+                int bestScore = 0;
+                for (long seed : seeds) {
+                    play(seed);
+                    total += fitness(engine);
+                    bestScore = Math.max(bestScore, engine.getScore());
+                    games++;
+                    ticks += engine.getTicks();
+                }
+                fitness[genome] = total / seeds.length;
+                bestScores[genome] = bestScore;
+            }
+        }
+
+        private void play(long seed) {
+            engine.reset(seed);
+            int eaten = 0;
+            long lastMeal = 0;
+            while (engine.getTicks() < settings.maxTicks) {
+                engine.steer(policy.nextDirection(engine));
+                if (!engine.tick()) break;
+                if (engine.getFoodsEaten() != eaten) {
+                    eaten = engine.getFoodsEaten();
+                    lastMeal = engine.getTicks();
+                } else if (engine.getTicks() - lastMeal > settings.hungerTicks) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A population between generations, plus the best genome seen so far.
+     * <p>
+     * Binary layout (big-endian): magic {@code "SNKE"}, version byte, hidden units, genome
+     * length, population size, generation, base seed, breeding generator state, best fitness,
+     * then the best genome and the population as floats.
+     */
+    public static final class Checkpoint {
+        static final int MAGIC = 0x534E4B45;
+        static final byte VERSION = 1;
+        static final int HEADER_SIZE = Integer.BYTES + 1 + 4 * Integer.BYTES + 2 * Long.BYTES + Double.BYTES;
+
+        final int hidden;
+        final int populationSize;
+        final int generation;
+        final long seed;
+        final long randomState;
+        final double bestFitness;
+        final float[] best;
+        final float[] population;
+
+        Checkpoint(int hidden, int populationSize, int generation, long seed, long randomState,
+                   double bestFitness, float[] best, float[] population) {
+            this.hidden = hidden;
+            this.populationSize = populationSize;
+            this.generation = generation;
+            this.seed = seed;
+            this.randomState = randomState;
+            this.bestFitness = bestFitness;
+            this.best = best;
+            this.population = population;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Writes to a temporary file and moves it over {@code file}, so a crash mid-write
+         * leaves the previous checkpoint intact.
+         */
+        public void save(Path file) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + (best.length + population.length) * Float.BYTES);
+            buffer.putInt(MAGIC).put(VERSION).putInt(hidden).putInt(best.length).putInt(populationSize)
+                    .putInt(generation).putLong(seed).putLong(randomState).putDouble(bestFitness);
+            buffer.asFloatBuffer().put(best).put(population);
+            buffer.clear();
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        public static Checkpoint load(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+                    throw new IOException("Not an evolution checkpoint");
+                }
+                byte version = in.get();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported checkpoint version " + version);
+                }
+                int hidden = in.getInt();
+                int genomeLength = in.getInt();
+                int populationSize = in.getInt();
+                if (hidden <= 0 || genomeLength != NeuralPolicy.genomeLength(hidden) || populationSize <= 0
+                        || in.capacity() != HEADER_SIZE + (long) genomeLength * (populationSize + 1) * Float.BYTES) {
+                    throw new IOException("Checkpoint does not match its header");
+                }
+                int generation = in.getInt();
+                long seed = in.getLong();
+                long randomState = in.getLong();
+                double bestFitness = in.getDouble();
+                float[] best = new float[genomeLength];
+                float[] population = new float[genomeLength * populationSize];
+                in.asFloatBuffer().get(best).get(population);
+                return new Checkpoint(hidden, populationSize, generation, seed, randomState, bestFitness,
+                        best, population);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: EvolutionTrainer [--generations=N] [--population=N] [--games=N] "
+                        + "[--hidden=N] [--width=W] [--height=H] [--max-rocks=R] [--max-ticks=T] [--hunger=T] "
+                        + "[--elites=N] [--tournament=N] [--mutation-rate=P] [--mutation-sigma=S] [--seed=S] "
+                        + "[--threads=N] [--checkpoint=file|] [--resume=true]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        Settings settings = new Settings();
+        settings.population = Integer.parseInt(options.getOrDefault("population", String.valueOf(settings.population)));
+        settings.gamesPerGenome = Integer.parseInt(options.getOrDefault("games", String.valueOf(settings.gamesPerGenome)));
+        settings.hidden = Integer.parseInt(options.getOrDefault("hidden", String.valueOf(settings.hidden)));
+        settings.width = Integer.parseInt(options.getOrDefault("width", String.valueOf(settings.width)));
+        settings.height = Integer.parseInt(options.getOrDefault("height", String.valueOf(settings.height)));
+        settings.maxRocks = Integer.parseInt(options.getOrDefault("max-rocks", String.valueOf(settings.maxRocks)));
+        settings.maxTicks = Long.parseLong(options.getOrDefault("max-ticks", String.valueOf(settings.maxTicks)));
+        settings.hungerTicks = Integer.parseInt(options.getOrDefault("hunger", String.valueOf(settings.hungerTicks)));
+        settings.elites = Integer.parseInt(options.getOrDefault("elites", String.valueOf(settings.elites)));
+        settings.tournament = Integer.parseInt(options.getOrDefault("tournament", String.valueOf(settings.tournament)));
+        settings.mutationRate = Double.parseDouble(options.getOrDefault("mutation-rate", String.valueOf(settings.mutationRate)));
+        settings.mutationSigma = Double.parseDouble(options.getOrDefault("mutation-sigma", String.valueOf(settings.mutationSigma)));
+        settings.seed = Long.parseLong(options.getOrDefault("seed", String.valueOf(settings.seed)));
+        settings.threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(settings.threads)));
+        int generations = Integer.parseInt(options.getOrDefault("generations", "50"));
+        String checkpointOption = options.getOrDefault("checkpoint", DEFAULT_CHECKPOINT);
+        Path checkpoint = checkpointOption.isEmpty() ? null : Paths.get(checkpointOption);
+
+        EvolutionTrainer trainer;
+        if (checkpoint != null && Boolean.parseBoolean(options.get("resume")) && Files.exists(checkpoint)) {
+            trainer = resume(settings, Checkpoint.load(checkpoint));
+            System.out.printf("resumed %s at generation %d%n", checkpoint, trainer.getGeneration());
+        } else {
+            trainer = new EvolutionTrainer(settings);
+        }
+
+        try {
+            int end = trainer.getGeneration() + generations;
+            while (trainer.getGeneration() < end) {
+                Generation result = trainer.step();
+                System.out.printf("gen %d: best=%.1f mean=%.1f best-score=%d games=%d "
+                                + "%.0f games/s (%.0f per thread) %.0f ticks/s%n",
+                        result.number, result.bestFitness, result.meanFitness, result.bestScore, result.games,
+                        result.gamesPerSecond(), result.gamesPerSecond() / settings.threads,
+                        result.ticks * 1e9 / Math.max(1, result.elapsedNanos));
+                if (checkpoint != null) {
+                    trainer.checkpoint().save(checkpoint);
+                }
+            }
+        } finally {
+            trainer.shutdown();
+        }
+        System.out.printf("best fitness %.1f%n", trainer.getBestFitness());
+    }
+}
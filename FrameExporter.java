@@ -0,0 +1,369 @@
+package ta.tugasakhir;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders a game to a PNG sequence, an animated GIF or raw RGB video without showing a window.
+ * <p>
+ * Each {@link #capture} copies the visible cells on the caller's thread, a few hundred bytes,
+ * and hands the frame to a pool of workers. The workers draw it with an {@link OffscreenRenderer}
+ * and encode it, so frames are drawn and compressed on every core while the game keeps
+ * stepping. Finished frames are written in order. At most two frames per worker are in
+ * flight, and {@code capture} waits for the oldest one beyond that, so memory stays the same
+ * however long the game runs.
+ * <p>
+ * {@link #main} also makes thumbnails: it plays many bot games in parallel through
+ * {@link BatchSimulator} and saves the final board of each as a PNG.
+ */
+public final class FrameExporter implements Closeable {
+
+    /**
+     * Turns frames into output. {@link #encode} runs on the worker threads and must be safe to
+     * call concurrently; {@link #write} gets its results one at a time in frame order.
+     */
+    interface Encoder extends Closeable {
+
+        /**
+         * @return bytes for {@link #write}, or null if the frame has already been stored
+         */
+        byte[] encode(OffscreenRenderer.Frame frame, long index) throws IOException;
+
+        void write(byte[] encoded) throws IOException;
+    }
+
+    private final OffscreenRenderer renderer;
+    private final Encoder encoder;
+    private final ExecutorService workers;
+    private final OffscreenRenderer.Camera camera = new OffscreenRenderer.Camera();
+    private final OffscreenRenderer.Frame[] frames;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private long frameCount;
+
+    FrameExporter(OffscreenRenderer renderer, Encoder encoder, int threads) {
+        this.renderer = renderer;
+        this.encoder = encoder;
+        this.workers = newWorkers(threads);
+        this.frames = new OffscreenRenderer.Frame[threads * 2];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = renderer.newFrame();
+        }
+    }
+
+    private static ExecutorService newWorkers(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "frame-export-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the engine's current state as the next frame.
+     */
+    public void capture(GameEngine engine) throws IOException {
+        if (pending.size() == frames.length) {
+            writeOldest();
+        }
+        long index = frameCount++;
+        OffscreenRenderer.Frame frame = frames[(int) (index % frames.length)];
+        renderer.capture(engine, camera, frame);
+        pending.add(workers.submit(() -> encoder.encode(frame, index)));
+    }
+
+    private void writeOldest() throws IOException {
+        byte[] encoded;
+        try {
+            encoded = pending.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding frames");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Could not encode frame", e.getCause());
+        }
+        if (encoded != null) {
+            encoder.write(encoded);
+        }
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Writes the frames still in flight and closes the output.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+        } finally {
+            workers.shutdownNow();
+            encoder.close();
+        }
+    }
+
+    /**
+     * Numbered PNG files in a directory, each written by the worker that drew it.
+     */
+    static final class PngEncoder implements Encoder {
+        private final OffscreenRenderer renderer;
+        private final Path directory;
+        private final ThreadLocal<BufferedImage> images;
+
+        PngEncoder(OffscreenRenderer renderer, Path directory) throws IOException {
+            this.renderer = renderer;
+            this.directory = Files.createDirectories(directory);
+            this.images = ThreadLocal.withInitial(() ->
+                    new BufferedImage(renderer.width, renderer.height, BufferedImage.TYPE_INT_RGB));
+        }
+
+        @Override
+        public byte[] encode(OffscreenRenderer.Frame frame, long index) throws IOException {
+            save(frame, directory.resolve(String.format("frame-%06d.png", index)));
+            return null;
+        }
+
+        void save(OffscreenRenderer.Frame frame, Path file) throws IOException {
+            BufferedImage image = images.get();
+            renderer.render(frame, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+            if (!ImageIO.write(image, "png", file.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+
+        @Override
+        public void write(byte[] encoded) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Headerless 24-bit RGB frames back to back, for a video encoder reading
+     * {@code -f rawvideo -pix_fmt rgb24}.
+     */
+    static final class RawEncoder implements Encoder {
+        private final OffscreenRenderer renderer;
+        private final OutputStream out;
+        private final ThreadLocal<int[]> pixels;
+
+        RawEncoder(OffscreenRenderer renderer, OutputStream out) {
+            this.renderer = renderer;
+            this.out = out;
+            this.pixels = ThreadLocal.withInitial(() -> new int[renderer.width * renderer.height]);
+        }
+
+        @Override
+        public byte[] encode(OffscreenRenderer.Frame frame, long index) {
+            int[] argb = pixels.get();
+            renderer.render(frame, argb);
+            byte[] rgb = new byte[argb.length * 3];
+            for (int i = 0, at = 0; i < argb.length; i++) {
+                rgb[at++] = (byte) (argb[i] >>> 16);
+                rgb[at++] = (byte) (argb[i] >>> 8);
+                rgb[at++] = (byte) argb[i];
+            }
+            return rgb;
+        }
+
+        @Override
+        public void write(byte[] encoded) throws IOException {
+            out.write(encoded);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        boolean step() throws IOException;
+    }
+
+    /**
+     * Captures the first state, every {@code every}-th tick after it and the final state.
+     */
+    private static void record(FrameExporter exporter, GameEngine engine, Step step, int every, long maxTicks)
+            throws IOException {
+        exporter.capture(engine);
+        long captured = engine.getTicks();
+        while (engine.getTicks() < maxTicks && step.step()) {
+            if (engine.getTicks() % every == 0) {
+                exporter.capture(engine);
+                captured = engine.getTicks();
+            }
+        }
+        if (engine.getTicks() != captured) {
+            exporter.capture(engine);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: FrameExporter --out=dir|file.gif|file.rgb|- "
+                        + "[--replay=file | --stream=file | --thumbnails=N] [--policy=wander|autopilot] "
+                        + "[--seed=S] [--width=W] [--height=H] [--max-rocks=R] [--max-ticks=T] "
+                        + "[--cell-size=PX] [--columns=C] [--rows=R] [--every=N] [--fps=F] [--threads=N]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        if (!options.containsKey("out")) {
+            throw new IllegalArgumentException("--out is required");
+        }
+
+        ImageIO.setUseCache(false);
+        try {
+            export(options);
+        } finally {
+            OffscreenRenderer.shutdown();
+        }
+    }
+
+    private static void export(Map<String, String> options) throws IOException {
+        String out = options.get("out");
+        int cellSize = Integer.parseInt(options.getOrDefault("cell-size", "28"));
+        int every = Integer.parseInt(options.getOrDefault("every", "1"));
+        double fps = Double.parseDouble(options.getOrDefault("fps", "10"));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        long maxTicks = Long.parseLong(options.getOrDefault("max-ticks", "5000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        int maxRocks = Integer.parseInt(options.getOrDefault("max-rocks", String.valueOf(GameEngine.MAX_ROCKS)));
+
+        String policy = options.getOrDefault("policy", "wander");
+        LongFunction<Policy> policies;
+        if (policy.equals("wander")) {
+            policies = WanderPolicy::new;
+        } else if (policy.equals("autopilot")) {
+            policies = ignored -> new Autopilot();
+        } else {
+            throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+
+        GameEngine engine;
+        Step step;
+        FileChannel stream = null;
+        if (options.containsKey("replay")) {
+            ReplayPlayer player = new ReplayPlayer(Replay.load(Paths.get(options.get("replay"))));
+            engine = player.getEngine();
+            step = player::step;
+        } else if (options.containsKey("stream")) {
+            stream = FileChannel.open(Paths.get(options.get("stream")), StandardOpenOption.READ);
+            SnapshotReader reader = new SnapshotReader(stream);
+            while (reader.getEngine() == null && reader.step()) {
+                // read up to the first keyframe
+            }
+            engine = reader.getEngine();
+            if (engine == null) {
+                throw new IOException("No keyframe in " + options.get("stream"));
+            }
+            GameEngine first = engine;
+            step = () -> {
+                if (!reader.step()) return false;
+                if (reader.getEngine() != first) {
+                    throw new IOException("Board size changes mid-stream");
+                }
+                return true;
+            };
+        } else {
+            int width = Integer.parseInt(options.getOrDefault("width", "20"));
+            int height = Integer.parseInt(options.getOrDefault("height", "15"));
+            engine = new GameEngine(width, height, seed, maxRocks);
+            GameEngine game = engine;
+            Policy bot = policies.apply(seed);
+            step = () -> {
+                game.steer(bot.nextDirection(game));
+                return game.tick();
+            };
+        }
+
+        int columns = Math.min(engine.getWidth(), Integer.parseInt(options.getOrDefault("columns", "1000000")));
+        int rows = Math.min(engine.getHeight(), Integer.parseInt(options.getOrDefault("rows", "1000000")));
+        OffscreenRenderer renderer = OffscreenRenderer.create(cellSize, columns, rows);
+
+        long start = System.nanoTime();
+        if (options.containsKey("thumbnails")) {
+            int games = Integer.parseInt(options.get("thumbnails"));
+            PngEncoder png = new PngEncoder(renderer, Paths.get(out));
+            ThreadLocal<OffscreenRenderer.Frame> frames = ThreadLocal.withInitial(renderer::newFrame);
+            BatchSimulator simulator = new BatchSimulator(engine.getWidth(), engine.getHeight(), maxRocks,
+                    maxTicks, policies);
+            simulator.setOnGameOver(game -> {
+                OffscreenRenderer.Frame frame = frames.get();
+                renderer.capture(game, new OffscreenRenderer.Camera(), frame);
+                try {
+                    png.save(frame, Paths.get(out, "game-" + Long.toUnsignedString(game.getSeed()) + ".png"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            simulator.run(games, seed, threads).print(System.out);
+            System.out.printf("thumbnails: %d in %.3fs (%.0f/s)%n",
+                    games, (System.nanoTime() - start) / 1e9, games * 1e9 / (System.nanoTime() - start));
+            return;
+        }
+
+        Encoder encoder;
+        if (out.endsWith(".gif")) {
+            encoder = new GifEncoder(new BufferedOutputStream(Files.newOutputStream(Paths.get(out)), 1 << 16),
+                    renderer, fps / every);
+        } else if (out.equals("-") || out.endsWith(".rgb")) {
+            OutputStream raw = out.equals("-") ? new FileOutputStream(FileDescriptor.out)
+                    : Files.newOutputStream(Paths.get(out));
+            encoder = new RawEncoder(renderer, new BufferedOutputStream(raw, 1 << 16));
+        } else {
+            encoder = new PngEncoder(renderer, Paths.get(out));
+        }
+
+        long frames;
+        try (FrameExporter exporter = new FrameExporter(renderer, encoder, threads)) {
+            record(exporter, engine, step, every, maxTicks);
+            frames = exporter.getFrameCount();
+        } finally {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        // stdout may be carrying the video itself
+        System.err.printf("frames=%d size=%dx%d ticks=%d score=%d elapsed=%.3fs (%.0f frames/s)%n",
+                frames, renderer.width, renderer.height, engine.getTicks(), engine.getScore(),
+                elapsed / 1e9, frames * 1e9 / Math.max(1, elapsed));
+    }
+}
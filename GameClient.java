@@ -0,0 +1,149 @@
+package ta.tugasakhir;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Connection to a {@link GameServer}. A background thread reads frames off the socket and
+ * queues them; {@link #poll()} applies them to the {@link RemoteGame} on the caller's thread,
+ * so the UI can draw the game without locking.
+ */
+public final class GameClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final RemoteGame game;
+    private final ConcurrentLinkedQueue<ByteBuffer> frames = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer message = ByteBuffer.allocate(2);
+    private final Thread reader;
+    private volatile boolean closed;
+
+    private GameClient(SocketChannel channel, RemoteGame game) {
+        this.channel = channel;
+        this.game = game;
+        this.reader = new Thread(this::readLoop, "game-client-reader");
+        reader.setDaemon(true);
+    }
+
+    /**
+     * Connects and waits for the server's welcome, which says how large the arena is.
+     */
+    public static GameClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+
+        ByteBuffer welcome = readFrame(channel);
+        if (welcome.get() != NetProtocol.FRAME_WELCOME) {
+            channel.close();
+            throw new IOException("Expected a welcome frame from " + host + ":" + port);
+        }
+        RemoteGame game = new RemoteGame(NetProtocol.getVarInt(welcome), NetProtocol.getVarInt(welcome),
+                NetProtocol.getVarInt(welcome), NetProtocol.getVarInt(welcome));
+
+        GameClient client = new GameClient(channel, game);
+        client.reader.start();
+        return client;
+    }
+
+    /**
+     * Reads one length-prefixed frame, returned positioned at its type byte.
+     */
+    static ByteBuffer readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length);
+        int size = length.getInt(0);
+        if (size <= 0 || size > NetProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Bad frame length " + size);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        readFully(channel, frame);
+        frame.flip();
+        return frame;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (!closed) {
+                frames.add(readFrame(channel));
+            }
+        } catch (IOException e) {
+            // server went away or we closed the socket
+        } finally {
+            closed = true;
+        }
+    }
+
+    /**
+     * Applies every frame received since the last call.
+     *
+     * @return true if the game changed
+     */
+    public boolean poll() {
+        boolean changed = false;
+        ByteBuffer frame;
+        while ((frame = frames.poll()) != null) {
+            if (!game.apply(frame.get(), frame)) {
+                send(NetProtocol.OP_RESYNC, 0);
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Joins the arena, or respawns after dying.
+     */
+    public void join() {
+        send(NetProtocol.OP_JOIN, 0);
+    }
+
+    public void steer(Direction direction) {
+        send(NetProtocol.OP_STEER, direction.ordinal());
+    }
+
+    private synchronized void send(byte op, int argument) {
+        if (closed) return;
+        message.clear();
+        message.put(op).put((byte) argument).flip();
+        try {
+            while (message.hasRemaining()) {
+                channel.write(message);
+            }
+        } catch (IOException e) {
+            closed = true;
+        }
+    }
+
+    RemoteGame getGame() {
+        return game;
+    }
+
+    public int getScore() {
+        int id = game.getPlayerId();
+        return id >= 0 ? game.getScore(id) : 0;
+    }
+
+    public boolean isAlive() {
+        return game.isAlive(game.getPlayerId());
+    }
+
+    public boolean isClosed() {
+        return closed && frames.isEmpty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+}
@@ -0,0 +1,622 @@
+package ta.tugasakhir;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * UI-free Snake simulation. Holds the board state and advances it one tick at a time,
+ * so the rules can run without a JavaFX toolkit.
+ */
+public class GameEngine {
+
+    public static final int INITIAL_SPEED = 150;
+    public static final int MIN_SPEED = 80;
+    public static final int MAX_ROCKS = 15;
+    public static final int ROCK_SPAWN_INTERVAL = 10_000;
+
+    private final int width;
+    private final int height;
+    private final GameRandom random;
+    private final Board board;
+
+    private final SnakeBody snake = new SnakeBody();
+    private final ChunkIndex foods;
+    private final ChunkIndex rocks;
+    private final int maxRocks;
+    private Direction currentDirection = Direction.RIGHT;
+    private Direction nextDirection = Direction.RIGHT;
+    private boolean gameOver = false;
+    private int score = 0;
+    private int speed = INITIAL_SPEED;
+    private int foodsEaten = 0;
+    private long ticks = 0;
+    private long elapsedMillis = 0;
+    private long nextRockAt = ROCK_SPAWN_INTERVAL;
+    private long seed;
+    private int foodChanges;
+    private int rockChanges;
+    private int lastRockCell = -1;
+    private int rockAttempts;
+    private Metrics metrics;
+    private Mark mark;
+    private boolean marked;
+
+    public GameEngine(int width, int height) {
+        this(width, height, System.nanoTime());
+    }
+
+    /**
+     * Creates a deterministic game: the same seed and the same inputs on the same ticks
+     * always produce the same run.
+     */
+    public GameEngine(int width, int height, long seed) {
+        this(width, height, seed, MAX_ROCKS);
+    }
+
+    /**
+     * @param maxRocks cap on the number of rocks on the board; large worlds can raise it far
+     *                 above {@link #MAX_ROCKS}
+     */
+    public GameEngine(int width, int height, long seed, int maxRocks) {
+        this.width = width;
+        this.height = height;
+        this.maxRocks = maxRocks;
+        this.random = new GameRandom(seed);
+        this.board = new Board(width, height);
+        this.foods = new ChunkIndex(width, height);
+        this.rocks = new ChunkIndex(width, height);
+        reset(seed);
+    }
+
+    /**
+     * Starts a new game seeded from the current generator, so a whole session stays
+     * reproducible from the seed the engine was created with.
+     */
+    public void reset() {
+        reset(random.nextLong());
+    }
+
+    public void reset(long seed) {
+        marked = false;
+        this.seed = seed;
+        random.setState(seed);
+        snake.clear();
+        foods.clear();
+        rocks.clear();
+        board.clear();
+        foodChanges++;
+        rockChanges++;
+
+        for (int i = 0; i < 3; i++) {
+            snake.addTail(board.index(5 - i, height / 2));
+            board.set(5 - i, height / 2, Board.SNAKE);
+        }
+
+        spawnInitialRocks();
+        spawnFood();
+        spawnSpecialFood();
+
+        gameOver = false;
+        score = 0;
+        speed = INITIAL_SPEED;
+        foodsEaten = 0;
+        ticks = 0;
+        elapsedMillis = 0;
+        nextRockAt = ROCK_SPAWN_INTERVAL;
+        currentDirection = Direction.RIGHT;
+        nextDirection = Direction.RIGHT;
+    }
+
+    private void spawnInitialRocks() {
+        for (int i = 0; i < 5; i++) {
+            spawnRock();
+        }
+    }
+
+    /**
+     * Queues a direction change for the next tick. Reversing into the body is ignored.
+     */
+    public void steer(Direction direction) {
+        switch (direction) {
+            case UP:
+                if (currentDirection != Direction.DOWN) nextDirection = Direction.UP;
+                break;
+            case DOWN:
+                if (currentDirection != Direction.UP) nextDirection = Direction.DOWN;
+                break;
+            case LEFT:
+                if (currentDirection != Direction.RIGHT) nextDirection = Direction.LEFT;
+                break;
+            case RIGHT:
+                if (currentDirection != Direction.LEFT) nextDirection = Direction.RIGHT;
+                break;
+        }
+    }
+
+    /**
+     * Advances the game by one step. Each tick counts as {@link #getSpeed()} milliseconds of
+     * game time, and a rock spawn is attempted every {@link #ROCK_SPAWN_INTERVAL} ms of it,
+     * so rock timing is part of the simulation rather than a wall-clock timer.
+     *
+     * @return false if the game is over (either already, or because this tick collided)
+     */
+    public boolean tick() {
+        if (gameOver) return false;
+
+        ticks++;
+        currentDirection = nextDirection;
+        int head = snake.head();
+        int x = head % width;
+        int y = head / width;
+
+        switch (currentDirection) {
+            case UP: y--; break;
+            case DOWN: y++; break;
+            case LEFT: x--; break;
+            case RIGHT: x++; break;
+        }
+
+        if (checkCollision(x, y)) {
+            gameOver = true;
+            if (metrics != null) {
+                metrics.recordCollision();
+            }
+            return false;
+        }
+
+        boolean ateFood = Board.isFood(board.get(x, y));
+
+        board.markDirty(head);
+        snake.pushHead(board.index(x, y));
+        board.set(x, y, Board.SNAKE);
+
+        if (ateFood) {
+            Point food = removeFood(x, y);
+            score += food.points;
+            foodsEaten++;
+
+            if (food.special) {
+                score += 50;
+                spawnSpecialFood();
+            } else {
+                if (foods.size() < 3) {
+                    spawnFood();
+                }
+            }
+        } else {
+            int tail = snake.popTail();
+            board.set(tail % width, tail / width, Board.EMPTY);
+            board.markDirty(snake.tail());
+        }
+
+        elapsedMillis += speed;
+        if (elapsedMillis >= nextRockAt) {
+            nextRockAt += ROCK_SPAWN_INTERVAL;
+            spawnRock();
+        }
+
+        updateSpeed();
+        return true;
+    }
+
+    private Point removeFood(int x, int y) {
+        Point food = foods.remove(x, y);
+        if (food == null) {
+            throw new IllegalStateException("No food at " + x + "," + y);
+        }
+        foodChanges++;
+        return food;
+    }
+
+    /**
+     * @return false if there was no free cell left to place the food on
+     */
+    private boolean spawnFood() {
+        long start = metrics != null ? System.nanoTime() : 0;
+        int cell = board.randomFreeCell(random);
+        if (cell >= 0) {
+            int x = cell % width;
+            int y = cell / width;
+            foods.add(new Point(x, y));
+            board.set(x, y, Board.FOOD);
+            foodChanges++;
+        }
+        if (metrics != null) {
+            metrics.recordSpawn(System.nanoTime() - start, 1, cell >= 0);
+        }
+        return cell >= 0;
+    }
+
+    private boolean spawnSpecialFood() {
+        if (foods.size() > 4) return false;
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        int cell = board.randomFreeCell(random);
+        if (cell >= 0) {
+            int x = cell % width;
+            int y = cell / width;
+            foods.add(new Point(x, y, true, 50));
+            board.set(x, y, Board.SPECIAL_FOOD);
+            foodChanges++;
+        }
+        if (metrics != null) {
+            metrics.recordSpawn(System.nanoTime() - start, 1, cell >= 0);
+        }
+        return cell >= 0;
+    }
+
+    /**
+     * Tries to place a rock on a random free cell that is not next to the snake. Gives up
+     * after a bounded number of candidates, or immediately when the board is full.
+     *
+     * @return true if a rock was placed
+     */
+    public boolean spawnRock() {
+        if (rocks.size() >= maxRocks) return false;
+        if (metrics == null) return placeRock();
+
+        long start = System.nanoTime();
+        boolean placed = placeRock();
+        metrics.recordSpawn(System.nanoTime() - start, rockAttempts, placed);
+        return placed;
+    }
+
+    private boolean placeRock() {
+        for (int attempts = 0; attempts < 50; attempts++) {
+            rockAttempts = attempts + 1;
+            int cell = board.randomFreeCell(random);
+            if (cell < 0) return false;
+
+            int x = cell % width;
+            int y = cell / width;
+            if (isValidRockPosition(x, y)) {
+                rocks.add(new Point(x, y));
+                board.set(x, y, Board.ROCK);
+                rockChanges++;
+                lastRockCell = cell;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bytes {@link #writeState} will write for the current state.
+     */
+    int stateSize() {
+        return 5 * Long.BYTES + 3 * Integer.BYTES + 3
+                + Integer.BYTES + snake.size() * Integer.BYTES
+                + Integer.BYTES + foods.size() * (Integer.BYTES + 1 + Integer.BYTES)
+                + Integer.BYTES + rocks.size() * Integer.BYTES
+                + Integer.BYTES + board.freeCount() * Integer.BYTES;
+    }
+
+    /**
+     * Writes everything needed to carry on the game exactly, generator state and free-cell
+     * order included. The snake and the free cells go in as bulk int copies.
+     */
+    void writeState(ByteBuffer out) {
+        out.putLong(seed).putLong(random.getState()).putLong(ticks).putLong(elapsedMillis).putLong(nextRockAt);
+        out.putInt(score).putInt(speed).putInt(foodsEaten);
+        out.put((byte) currentDirection.ordinal()).put((byte) nextDirection.ordinal()).put((byte) (gameOver ? 1 : 0));
+
+        out.putInt(snake.size());
+        snake.writeTo(out.asIntBuffer());
+        out.position(out.position() + snake.size() * Integer.BYTES);
+
+        out.putInt(foods.size());
+        foods.forEach(food -> out.putInt(board.index(food.x, food.y)).put((byte) (food.special ? 1 : 0)).putInt(food.points));
+        out.putInt(rocks.size());
+        rocks.forEach(rock -> out.putInt(board.index(rock.x, rock.y)));
+        board.writeFree(out);
+    }
+
+    /**
+     * Replaces the whole game with a state written by {@link #writeState} on an engine of the
+     * same size.
+     */
+    void readState(ByteBuffer in) {
+        marked = false;
+        Direction[] directions = Direction.values();
+        seed = in.getLong();
+        random.setState(in.getLong());
+        ticks = in.getLong();
+        elapsedMillis = in.getLong();
+        nextRockAt = in.getLong();
+        score = in.getInt();
+        speed = in.getInt();
+        foodsEaten = in.getInt();
+        currentDirection = directions[in.get()];
+        nextDirection = directions[in.get()];
+        gameOver = in.get() != 0;
+
+        foods.clear();
+        rocks.clear();
+        board.clear();
+        foodChanges++;
+        rockChanges++;
+
+        int length = in.getInt();
+        snake.readFrom(in.asIntBuffer(), length);
+        in.position(in.position() + length * Integer.BYTES);
+        for (int i = 0; i < length; i++) {
+            int cell = snake.get(i);
+            board.set(cell % width, cell / width, Board.SNAKE);
+        }
+
+        int foodCount = in.getInt();
+        for (int i = 0; i < foodCount; i++) {
+            int cell = in.getInt();
+            boolean special = in.get() != 0;
+            Point food = new Point(cell % width, cell / width, special, in.getInt());
+            foods.add(food);
+            board.set(food.x, food.y, special ? Board.SPECIAL_FOOD : Board.FOOD);
+        }
+
+        int rockCount = in.getInt();
+        for (int i = 0; i < rockCount; i++) {
+            int cell = in.getInt();
+            rocks.add(new Point(cell % width, cell / width));
+            board.set(cell % width, cell / width, Board.ROCK);
+        }
+        board.readFree(in);
+    }
+
+    /**
+     * Replaces the generator state, so the food and rock spawns from here on are a fresh
+     * sample instead of the ones this game would really get. Planners use it on copies.
+     */
+    void reseed(long state) {
+        random.setState(state);
+    }
+
+    /**
+     * Remembers the current state for {@link #rewind}. From here on the board logs the cells
+     * that change and the food and rock indexes the points added and removed, so a rewind
+     * costs what was played since plus copying the snake back, not a pass over the whole
+     * board. {@link #reset} and {@link #readState} drop the mark.
+     */
+    void mark() {
+        if (mark == null) {
+            mark = new Mark();
+        }
+        Mark m = mark;
+        m.seed = seed;
+        m.randomState = random.getState();
+        m.ticks = ticks;
+        m.elapsedMillis = elapsedMillis;
+        m.nextRockAt = nextRockAt;
+        m.score = score;
+        m.speed = speed;
+        m.foodsEaten = foodsEaten;
+        m.lastRockCell = lastRockCell;
+        m.rockAttempts = rockAttempts;
+        m.currentDirection = currentDirection;
+        m.nextDirection = nextDirection;
+        m.gameOver = gameOver;
+
+        m.snakeLength = snake.size();
+        if (m.snake.capacity() < m.snakeLength) {
+            m.snake = IntBuffer.allocate(Integer.highestOneBit(m.snakeLength) << 1);
+        }
+        m.snake.clear();
+        snake.writeTo(m.snake);
+
+        board.startJournal();
+        foods.startJournal();
+        rocks.startJournal();
+        marked = true;
+    }
+
+    /**
+     * Puts the game back as it was at the last {@link #mark}, generator state included. The
+     * mark stays, so a planner can play out and rewind as often as it likes.
+     */
+    void rewind() {
+        if (!marked) {
+            throw new IllegalStateException("No mark to rewind to");
+        }
+        Mark m = mark;
+        board.rollBack();
+        foods.rollBack();
+        rocks.rollBack();
+        seed = m.seed;
+        random.setState(m.randomState);
+        ticks = m.ticks;
+        elapsedMillis = m.elapsedMillis;
+        nextRockAt = m.nextRockAt;
+        score = m.score;
+        speed = m.speed;
+        foodsEaten = m.foodsEaten;
+        lastRockCell = m.lastRockCell;
+        rockAttempts = m.rockAttempts;
+        currentDirection = m.currentDirection;
+        nextDirection = m.nextDirection;
+        gameOver = m.gameOver;
+
+        m.snake.rewind();
+        snake.readFrom(m.snake, m.snakeLength);
+        foodChanges++;
+        rockChanges++;
+    }
+
+    /**
+     * Everything {@link #rewind} restores besides the journaled board cells, foods and rocks.
+     */
+    private static final class Mark {
+        long seed;
+        long randomState;
+        long ticks;
+        long elapsedMillis;
+        long nextRockAt;
+        int score;
+        int speed;
+        int foodsEaten;
+        int lastRockCell;
+        int rockAttempts;
+        Direction currentDirection;
+        Direction nextDirection;
+        boolean gameOver;
+        IntBuffer snake = IntBuffer.allocate(64);
+        int snakeLength;
+    }
+
+    boolean isValidPosition(int x, int y) {
+        return board.isEmpty(x, y);
+    }
+
+    boolean isValidRockPosition(int x, int y) {
+        if (x < 2 && y < 2) return false;
+        if (!board.isEmpty(x, y)) return false;
+
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                if (board.get(nx, ny) == Board.SNAKE) return false;
+            }
+        }
+
+        return true;
+    }
+
+    boolean checkCollision(int x, int y) {
+        return board.isBlocked(x, y);
+    }
+
+    /**
+     * Whether moving one cell from the head in the given direction would end the game.
+     */
+    public boolean wouldCollide(Direction direction) {
+        int head = snake.head();
+        return checkCollision(head % width + direction.dx, head / width + direction.dy);
+    }
+
+    private void updateSpeed() {
+        if (foodsEaten % 5 == 0 && foodsEaten > 0) {
+            speed = Math.max(MIN_SPEED, INITIAL_SPEED - (foodsEaten / 5) * 20);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    Board getBoard() {
+        return board;
+    }
+
+    SnakeBody getSnake() {
+        return snake;
+    }
+
+    /**
+     * Counters bumped whenever a food or rock is placed or removed, so planners can tell
+     * cheaply whether the board changed since they last looked.
+     */
+    int getFoodChanges() {
+        return foodChanges;
+    }
+
+    int getRockChanges() {
+        return rockChanges;
+    }
+
+    /**
+     * Copy of the foods on the board. Prefer {@link #getFoodIndex()} in per-frame code.
+     */
+    public List<Point> getFoods() {
+        return Collections.unmodifiableList(foods.toList());
+    }
+
+    /**
+     * Copy of the rocks on the board. Prefer {@link #getRockIndex()} in per-frame code.
+     */
+    public List<Point> getRocks() {
+        return Collections.unmodifiableList(rocks.toList());
+    }
+
+    ChunkIndex getFoodIndex() {
+        return foods;
+    }
+
+    /**
+     * Instruments spawns and collisions; null switches it off again.
+     */
+    void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Cell of the most recently spawned rock, or -1 before the first.
+     */
+    int getLastRockCell() {
+        return lastRockCell;
+    }
+
+    ChunkIndex getRockIndex() {
+        return rocks;
+    }
+
+    public int getMaxRocks() {
+        return maxRocks;
+    }
+
+    public Direction getCurrentDirection() {
+        return currentDirection;
+    }
+
+    public Direction getNextDirection() {
+        return nextDirection;
+    }
+
+    /**
+     * Replaces the board with just a snake on the given cells, head first. Lets benchmarks
+     * set up long snakes without playing the game.
+     */
+    void placeSnake(int[] cells, int length) {
+        snake.clear();
+        foods.clear();
+        rocks.clear();
+        board.clear();
+        foodChanges++;
+        rockChanges++;
+
+        for (int i = 0; i < length; i++) {
+            snake.addTail(cells[i]);
+            board.set(cells[i] % width, cells[i] / width, Board.SNAKE);
+        }
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getSpeed() {
+        return speed;
+    }
+
+    public int getFoodsEaten() {
+        return foodsEaten;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,295 @@
+package ta.tugasakhir;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Draws a {@link GameEngine}, or any other {@link BoardView}, onto a canvas. Kept separate
+ * from {@link SnakeGame} so the same visuals can be rendered on an offscreen canvas.
+ * <p>
+ * {@link #drawChanges} repaints only the cells the engine touched since the last draw. For
+ * that to work every sprite stays inside its own cell and none depends on its position in
+ * the snake, only on the cell it occupies. Sprites come pre-rendered from a
+ * {@link SpriteCache}.
+ * <p>
+ * The canvas is a viewport onto the board: it shows as many whole cells as fit, and when the
+ * board is larger the camera follows the player's head, jumping to re-centre it once it
+ * comes within {@link #SCROLL_MARGIN} cells of an edge. Only visible cells are ever drawn,
+ * looked up straight in the board grid, so the cost of a frame does not depend on the board
+ * size.
+ */
+class GameRenderer {
+
+    static final int LIGHT_GRASS = 0xFFA2D149;
+    static final int DARK_GRASS = 0xFFAAD751;
+    static final int SCROLL_MARGIN = 3;
+
+    private final GraphicsContext gc;
+    private final int cellSize;
+    private final int viewColumns;
+    private final int viewRows;
+    private int cameraX;
+    private int cameraY;
+    private WritableImage background;
+    private SpriteCache sprites;
+    private int slidingFrom = -1;
+    private final EngineView engineView = new EngineView();
+
+    GameRenderer(Canvas canvas, int cellSize) {
+        this.gc = canvas.getGraphicsContext2D();
+        this.cellSize = cellSize;
+        this.viewColumns = (int) canvas.getWidth() / cellSize;
+        this.viewRows = (int) canvas.getHeight() / cellSize;
+    }
+
+    /**
+     * Drops the pre-rendered sprites so they are painted again on the next draw.
+     */
+    void invalidateSprites() {
+        sprites = null;
+    }
+
+    private SpriteCache sprites() {
+        if (sprites == null || sprites.cellSize != cellSize) {
+            sprites = new SpriteCache(cellSize);
+        }
+        return sprites;
+    }
+
+    void drawGame(GameEngine engine) {
+        drawGame(engineView.of(engine));
+    }
+
+    void drawGame(BoardView view) {
+        Board board = view.getBoard();
+        int focus = view.getFocusCell();
+        cameraX = clampCamera(focus % board.width - viewColumns / 2, board.width, viewColumns);
+        cameraY = clampCamera(focus / board.width - viewRows / 2, board.height, viewRows);
+        drawView(view);
+    }
+
+    private void drawView(BoardView view) {
+        Board board = view.getBoard();
+        if (background == null) {
+            background = renderBackground();
+        }
+
+        int columns = Math.min(viewColumns, board.width);
+        int rows = Math.min(viewRows, board.height);
+        gc.drawImage(background, backgroundOffset(), 0, columns * cellSize, rows * cellSize,
+                0, 0, columns * cellSize, rows * cellSize);
+
+        for (int y = cameraY; y < cameraY + rows; y++) {
+            for (int x = cameraX; x < cameraX + columns; x++) {
+                if (board.get(x, y) != Board.EMPTY) {
+                    drawSprite(view, x, y);
+                }
+            }
+        }
+        board.clearDirty();
+    }
+
+    private static int clampCamera(int camera, int boardSize, int viewSize) {
+        return Math.max(0, Math.min(camera, boardSize - viewSize));
+    }
+
+    /**
+     * Moves the camera if the focus has come too close to the edge of the view.
+     *
+     * @return true if the camera moved
+     */
+    private boolean followFocus(BoardView view) {
+        Board board = view.getBoard();
+        int focus = view.getFocusCell();
+        int x = focus % board.width - cameraX;
+        int y = focus / board.width - cameraY;
+        int marginX = Math.min(SCROLL_MARGIN, viewColumns / 4);
+        int marginY = Math.min(SCROLL_MARGIN, viewRows / 4);
+
+        int newX = cameraX;
+        int newY = cameraY;
+        if (x < marginX || x >= viewColumns - marginX) {
+            newX = clampCamera(cameraX + x - viewColumns / 2, board.width, viewColumns);
+        }
+        if (y < marginY || y >= viewRows - marginY) {
+            newY = clampCamera(cameraY + y - viewRows / 2, board.height, viewRows);
+        }
+        if (newX == cameraX && newY == cameraY) return false;
+
+        cameraX = newX;
+        cameraY = newY;
+        return true;
+    }
+
+    private boolean isVisible(int cellX, int cellY) {
+        return cellX >= cameraX && cellX < cameraX + viewColumns
+                && cellY >= cameraY && cellY < cameraY + viewRows;
+    }
+
+    void drawChanges(GameEngine engine) {
+        drawChanges(engineView.of(engine));
+    }
+
+    /**
+     * Repaints the visible cells changed since the previous draw, falling back to a full
+     * redraw after a reset, a scroll or more changes than the board tracks.
+     */
+    void drawChanges(BoardView view) {
+        Board board = view.getBoard();
+        if (board.isAllDirty() || cameraX + Math.min(viewColumns, board.width) > board.width
+                || cameraY + Math.min(viewRows, board.height) > board.height) {
+            drawGame(view);
+            return;
+        }
+        if (followFocus(view)) {
+            drawView(view);
+            return;
+        }
+
+        for (int i = 0; i < board.dirtyCount(); i++) {
+            drawCell(view, board.dirtyCell(i));
+        }
+        board.clearDirty();
+    }
+
+    /**
+     * Like {@link #drawChanges}, but draws the head part-way from its previous cell to its
+     * current one, {@code alpha} being the fraction of the current tick already elapsed.
+     * The cells the sliding head covered in the previous frame are repainted first.
+     */
+    void drawInterpolated(GameEngine engine, double alpha) {
+        BoardView view = engineView.of(engine);
+        drawChanges(view);
+
+        SnakeBody snake = engine.getSnake();
+        if (snake.size() < 2) return;
+
+        int head = snake.head();
+        int previous = snake.get(1);
+        int width = engine.getWidth();
+        int cells = width * engine.getHeight();
+        if (slidingFrom >= 0 && slidingFrom < cells && slidingFrom != previous && slidingFrom != head) {
+            drawCell(view, slidingFrom);
+        }
+
+        slidingFrom = previous;
+        if (!isVisible(head % width, head / width) || !isVisible(previous % width, previous / width)) {
+            return;
+        }
+
+        drawCellBackground(head % width, head / width);
+        drawCell(view, previous);
+
+        double fromX = previous % width - cameraX;
+        double fromY = previous / width - cameraY;
+        double x = (fromX + (head % width - cameraX - fromX) * alpha) * cellSize;
+        double y = (fromY + (head / width - cameraY - fromY) * alpha) * cellSize;
+        gc.drawImage(sprites().head(engine.getCurrentDirection()), x, y);
+    }
+
+    private void drawCellBackground(int cellX, int cellY) {
+        double x = (cellX - cameraX) * cellSize;
+        double y = (cellY - cameraY) * cellSize;
+        gc.drawImage(background, backgroundOffset() + x, y, cellSize, cellSize, x, y, cellSize, cellSize);
+    }
+
+    private void drawCell(BoardView view, int cell) {
+        int width = view.getBoard().width;
+        int cellX = cell % width;
+        int cellY = cell / width;
+        if (!isVisible(cellX, cellY)) return;
+
+        drawCellBackground(cellX, cellY);
+        drawSprite(view, cellX, cellY);
+    }
+
+    private void drawSprite(BoardView view, int cellX, int cellY) {
+        double x = (cellX - cameraX) * cellSize;
+        double y = (cellY - cameraY) * cellSize;
+
+        SpriteCache sprites = sprites();
+        Board board = view.getBoard();
+        switch (board.get(cellX, cellY)) {
+            case Board.ROCK:
+                gc.drawImage(sprites.rock(), x, y);
+                break;
+            case Board.FOOD:
+                gc.drawImage(sprites.food(), x, y);
+                break;
+            case Board.SPECIAL_FOOD:
+                gc.drawImage(sprites.specialFood(), x, y);
+                break;
+            case Board.SNAKE:
+                int cell = board.index(cellX, cellY);
+                Direction head = view.getHeadDirection(cell);
+                if (head != null) {
+                    gc.drawImage(sprites.head(head), x, y);
+                } else if (view.isTail(cell)) {
+                    gc.drawImage(sprites.tail(cellX + cellY), x, y);
+                } else {
+                    gc.drawImage(sprites.body(cellX + cellY), x, y);
+                }
+                break;
+        }
+    }
+
+    /**
+     * The checkerboard repeats every two cells, so one viewport-sized image with a spare
+     * column serves any camera position: an odd camera starts one cell into it.
+     */
+    private double backgroundOffset() {
+        return ((cameraX + cameraY) & 1) * cellSize;
+    }
+
+    private WritableImage renderBackground() {
+        int pixelWidth = (viewColumns + 1) * cellSize;
+        int pixelHeight = viewRows * cellSize;
+        WritableImage image = new WritableImage(pixelWidth, pixelHeight);
+        PixelWriter writer = image.getPixelWriter();
+        int[] row = new int[pixelWidth];
+
+        for (int py = 0; py < pixelHeight; py++) {
+            int y = py / cellSize;
+            for (int px = 0; px < pixelWidth; px++) {
+                row[px] = (px / cellSize + y) % 2 == 0 ? LIGHT_GRASS : DARK_GRASS;
+            }
+            writer.setPixels(0, py, pixelWidth, 1, PixelFormat.getIntArgbInstance(), row, 0, pixelWidth);
+        }
+        return image;
+    }
+
+    /**
+     * Adapts the single-player engine, reused across draws so drawing does not allocate.
+     */
+    private static final class EngineView implements BoardView {
+        private GameEngine engine;
+
+        EngineView of(GameEngine engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        @Override
+        public Board getBoard() {
+            return engine.getBoard();
+        }
+
+        @Override
+        public int getFocusCell() {
+            return engine.getSnake().head();
+        }
+
+        @Override
+        public Direction getHeadDirection(int cell) {
+            return cell == engine.getSnake().head() ? engine.getCurrentDirection() : null;
+        }
+
+        @Override
+        public boolean isTail(int cell) {
+            return cell == engine.getSnake().tail();
+        }
+    }
+}
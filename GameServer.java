@@ -0,0 +1,347 @@
+package ta.tugasakhir;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authoritative multiplayer server. One thread runs both a non-blocking selector over all
+ * client sockets and the fixed-rate {@link Arena} tick, so game state is never shared
+ * between threads.
+ * <p>
+ * Client input is only buffered when it arrives - queued per client in an {@link InputQueue},
+ * so quick turns inside one tick are not lost - and applied at the start of each tick, one
+ * turn per client. After the tick the arena's log is
+ * encoded into one delta frame that every in-sync client is sent a view of; clients that
+ * just connected, asked to resync or fell too far behind get a keyframe instead, and a
+ * client whose unsent output grows beyond {@link #MAX_QUEUED_BYTES} has its queued deltas
+ * dropped in favour of a keyframe.
+ */
+public final class GameServer implements Runnable, Closeable {
+
+    static final int MAX_QUEUED_BYTES = 1 << 20;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Arena arena;
+    private final int tickMillis;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final List<Connection> connections = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private long bytesSent;
+    private long keyframesSent;
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer input = ByteBuffer.allocate(256);
+        final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        int queuedBytes;
+        final InputQueue steers = new InputQueue(8);
+        int playerId = -1;
+        boolean wantsJoin;
+        boolean needsKeyframe = true;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    public GameServer(Arena arena, InetSocketAddress address, int tickMillis) throws IOException {
+        this.arena = arena;
+        this.tickMillis = tickMillis;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public Arena getArena() {
+        return arena;
+    }
+
+    @Override
+    public void run() {
+        long tickNanos = tickMillis * 1_000_000L;
+        long nextTick = System.nanoTime() + tickNanos;
+        try {
+            while (running) {
+                poll((nextTick - System.nanoTime()) / 1_000_000);
+
+                long now = System.nanoTime();
+                if (now >= nextTick) {
+                    tick();
+                    nextTick += tickNanos;
+                    if (now - nextTick > 5 * tickNanos) {
+                        // fell far behind, e.g. after a pause in the debugger: skip ahead
+                        nextTick = now + tickNanos;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                throw new IllegalStateException("Server loop failed", e);
+            }
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Accepts, reads and writes whatever the sockets are ready for, waiting up to
+     * {@code waitMillis} for something to happen; 0 or less does not wait.
+     */
+    void poll(long waitMillis) throws IOException {
+        if (waitMillis > 0) {
+            selector.select(waitMillis);
+        } else {
+            selector.selectNow();
+        }
+        handleKeys();
+    }
+
+    private void handleKeys() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) continue;
+
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(connection);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush(connection);
+                }
+            } catch (IOException e) {
+                disconnect(connection);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Connection connection = new Connection(channel, key);
+            key.attach(connection);
+            connections.add(connection);
+            send(connection, NetProtocol.welcome(arena, tickMillis));
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer input = connection.input;
+        if (connection.channel.read(input) < 0) {
+            disconnect(connection);
+            return;
+        }
+
+        input.flip();
+        while (input.remaining() >= 2) {
+            byte op = input.get();
+            byte argument = input.get();
+            if (op == NetProtocol.OP_JOIN) {
+                connection.wantsJoin = true;
+            } else if (op == NetProtocol.OP_STEER && argument >= 0 && argument < DIRECTIONS.length) {
+                connection.steers.offer(DIRECTIONS[argument], System.nanoTime());
+            } else if (op == NetProtocol.OP_RESYNC) {
+                connection.needsKeyframe = true;
+            }
+        }
+        input.compact();
+    }
+
+    /**
+     * Applies the buffered input, advances the arena and sends every client its frame.
+     */
+    void tick() {
+        long now = System.nanoTime();
+        // backwards, like the sends below: a failed send disconnects and removes the client
+        for (int i = connections.size() - 1; i >= 0; i--) {
+            Connection connection = connections.get(i);
+            if (connection.wantsJoin) {
+                connection.wantsJoin = false;
+                if (connection.playerId < 0) {
+                    connection.playerId = arena.join();
+                    if (connection.playerId >= 0) {
+                        send(connection, NetProtocol.joined(connection.playerId));
+                    }
+                } else {
+                    arena.respawn(connection.playerId);
+                }
+            }
+            if (connection.playerId >= 0 && arena.isAlive(connection.playerId)) {
+                Direction turn = connection.steers.poll(arena.getDirection(connection.playerId), now);
+                if (turn != null) {
+                    arena.steer(connection.playerId, turn);
+                }
+            } else {
+                connection.steers.clear();
+            }
+        }
+
+        arena.tick();
+
+        ByteBuffer delta = NetProtocol.delta(arena);
+        ByteBuffer keyframe = null;
+        for (int i = connections.size() - 1; i >= 0; i--) {
+            Connection connection = connections.get(i);
+            if (connection.queuedBytes > MAX_QUEUED_BYTES) {
+                dropQueuedFrames(connection);
+            }
+            if (connection.needsKeyframe) {
+                if (keyframe == null) {
+                    keyframe = NetProtocol.keyframe(arena);
+                }
+                connection.needsKeyframe = false;
+                keyframesSent++;
+                send(connection, keyframe);
+            } else {
+                send(connection, delta);
+            }
+        }
+    }
+
+    /**
+     * Forgets frames a slow client has not started receiving yet and schedules a keyframe
+     * to replace them. A frame already partly written has to be finished first.
+     */
+    private void dropQueuedFrames(Connection connection) {
+        ByteBuffer partial = connection.output.peekFirst();
+        boolean keepFirst = partial != null && partial.position() > 0;
+        connection.output.clear();
+        connection.queuedBytes = 0;
+        if (keepFirst) {
+            connection.output.add(partial);
+            connection.queuedBytes = partial.remaining();
+        }
+        connection.needsKeyframe = true;
+    }
+
+    private void send(Connection connection, ByteBuffer frame) {
+        ByteBuffer view = frame.duplicate();
+        connection.output.add(view);
+        connection.queuedBytes += view.remaining();
+        try {
+            flush(connection);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void flush(Connection connection) throws IOException {
+        ArrayDeque<ByteBuffer> output = connection.output;
+        while (!output.isEmpty()) {
+            ByteBuffer head = output.peekFirst();
+            int written = connection.channel.write(head);
+            connection.queuedBytes -= written;
+            bytesSent += written;
+            if (head.hasRemaining()) break;
+            output.pollFirst();
+        }
+        if (connection.key.isValid()) {
+            connection.key.interestOps(output.isEmpty()
+                    ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        if (!connections.remove(connection)) return;
+        if (connection.playerId >= 0) {
+            arena.leave(connection.playerId);
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getKeyframesSent() {
+        return keyframesSent;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeQuietly() {
+        for (Connection connection : new ArrayList<>(connections)) {
+            disconnect(connection);
+        }
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException ignored) {
+            // shutting down anyway
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: GameServer [--port=P] [--width=W] [--height=H] [--max-players=N] "
+                        + "[--max-rocks=R] [--tick-ms=T] [--seed=S]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        int port = Integer.parseInt(options.getOrDefault("port", "7777"));
+        int width = Integer.parseInt(options.getOrDefault("width", "64"));
+        int height = Integer.parseInt(options.getOrDefault("height", "48"));
+        int maxPlayers = Integer.parseInt(options.getOrDefault("max-players", "256"));
+        int maxRocks = Integer.parseInt(options.getOrDefault("max-rocks", String.valueOf(width * height / 64)));
+        int tickMillis = Integer.parseInt(options.getOrDefault("tick-ms", "100"));
+        long seed = Long.parseLong(options.getOrDefault("seed", String.valueOf(System.nanoTime())));
+
+        Arena arena = new Arena(width, height, maxPlayers, maxRocks,
+                GameEngine.ROCK_SPAWN_INTERVAL / tickMillis, seed);
+        GameServer server = new GameServer(arena, new InetSocketAddress(port), tickMillis);
+        System.out.println("Serving a " + width + "x" + height + " arena on port " + server.getPort());
+        server.run();
+    }
+}
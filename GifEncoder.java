@@ -0,0 +1,361 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Animated GIF output for {@link FrameExporter}, written as frames arrive. The palette is
+ * chosen once, by median cut over the renderer's tiles, and every tile is mapped to it up
+ * front. A frame is then indexed by the same row copies that draw it, with no per-pixel
+ * quantizing. {@link #encode} builds a frame's whole image block, LZW compression included,
+ * on a worker thread. {@link #write} only appends the finished blocks in order.
+ */
+final class GifEncoder implements FrameExporter.Encoder {
+
+    private static final int PALETTE_SIZE = 256;
+    private static final int MIN_CODE_SIZE = 8;
+    private static final int CLEAR = 1 << MIN_CODE_SIZE;
+    private static final int END = CLEAR + 1;
+    private static final int MAX_CODES = 4096;
+    private static final int HASH_BITS = 13;
+
+    private final OutputStream out;
+    private final OffscreenRenderer renderer;
+    private final int delayCentis;
+    /** RGB colours, indexed by palette entry. */
+    final int[] palette;
+    /** The renderer's tiles as palette indexes. */
+    final byte[][] indexedTiles;
+    private final ThreadLocal<Lzw> lzw;
+
+    /**
+     * @param fps frames per second; GIF delays are in hundredths of a second, so it is rounded
+     */
+    GifEncoder(OutputStream out, OffscreenRenderer renderer, double fps) throws IOException {
+        this.out = out;
+        this.renderer = renderer;
+        this.delayCentis = Math.max(2, (int) Math.round(100 / fps));
+        this.palette = buildPalette(renderer.tiles);
+        this.indexedTiles = new byte[renderer.tiles.length][];
+        Map<Integer, Byte> nearest = new HashMap<>();
+        for (int i = 0; i < indexedTiles.length; i++) {
+            int[] tile = renderer.tiles[i];
+            byte[] indexed = new byte[tile.length];
+            for (int p = 0; p < tile.length; p++) {
+                indexed[p] = nearest.computeIfAbsent(tile[p] & 0xFFFFFF, this::nearest);
+            }
+            indexedTiles[i] = indexed;
+        }
+        int pixels = renderer.width * renderer.height;
+        this.lzw = ThreadLocal.withInitial(() -> new Lzw(pixels));
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        byte[] header = new byte[13 + PALETTE_SIZE * 3 + 19];
+        int at = 0;
+        for (char c : "GIF89a".toCharArray()) {
+            header[at++] = (byte) c;
+        }
+        at = putShort(header, at, renderer.width);
+        at = putShort(header, at, renderer.height);
+        header[at++] = (byte) 0xF7; // global palette of 256 colours, 8 bits each
+        header[at++] = 0;
+        header[at++] = 0;
+        for (int color : palette) {
+            header[at++] = (byte) (color >>> 16);
+            header[at++] = (byte) (color >>> 8);
+            header[at++] = (byte) color;
+        }
+        // loop forever
+        header[at++] = 0x21;
+        header[at++] = (byte) 0xFF;
+        header[at++] = 11;
+        for (char c : "NETSCAPE2.0".toCharArray()) {
+            header[at++] = (byte) c;
+        }
+        header[at++] = 3;
+        header[at++] = 1;
+        at = putShort(header, at, 0);
+        header[at] = 0;
+        out.write(header);
+    }
+
+    private static int putShort(byte[] bytes, int at, int value) {
+        bytes[at] = (byte) value;
+        bytes[at + 1] = (byte) (value >>> 8);
+        return at + 2;
+    }
+
+    @Override
+    public byte[] encode(OffscreenRenderer.Frame frame, long index) {
+        Lzw encoder = lzw.get();
+        renderer.render(frame, indexedTiles, encoder.pixels);
+        return encoder.imageBlock(renderer.width, renderer.height, delayCentis);
+    }
+
+    @Override
+    public void write(byte[] encoded) throws IOException {
+        out.write(encoded);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.write(0x3B);
+        out.close();
+    }
+
+    private byte nearest(int rgb) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.length; i++) {
+            int distance = distance(rgb, palette[i]);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return (byte) best;
+    }
+
+    private static int distance(int a, int b) {
+        int r = ((a >>> 16) & 0xFF) - ((b >>> 16) & 0xFF);
+        int g = ((a >>> 8) & 0xFF) - ((b >>> 8) & 0xFF);
+        int bl = (a & 0xFF) - (b & 0xFF);
+        return r * r + g * g + bl * bl;
+    }
+
+    /**
+     * Median cut: keeps splitting the box of colours with the widest channel range at its
+     * pixel-weighted median until there are 256 boxes, then takes each box's mean. Tiles
+     * with 256 colours or fewer keep them exactly.
+     */
+    static int[] buildPalette(int[][] tiles) {
+        int total = 0;
+        for (int[] tile : tiles) {
+            total += tile.length;
+        }
+        int[] all = new int[total];
+        int at = 0;
+        for (int[] tile : tiles) {
+            for (int argb : tile) {
+                all[at++] = argb & 0xFFFFFF;
+            }
+        }
+        Arrays.sort(all);
+
+        // colour << 32 | pixel count, one entry per distinct colour
+        long[] colors = new long[total];
+        int distinct = 0;
+        for (int i = 0; i < total; ) {
+            int j = i;
+            while (j < total && all[j] == all[i]) j++;
+            colors[distinct++] = (long) all[i] << 32 | (j - i);
+            i = j;
+        }
+
+        int[] from = new int[PALETTE_SIZE];
+        int[] to = new int[PALETTE_SIZE];
+        int boxes = 1;
+        to[0] = distinct;
+        while (boxes < PALETTE_SIZE) {
+            int widest = -1;
+            int widestRange = 0;
+            int widestShift = 0;
+            for (int b = 0; b < boxes; b++) {
+                if (to[b] - from[b] < 2) continue;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int min = 255;
+                    int max = 0;
+                    for (int i = from[b]; i < to[b]; i++) {
+                        int channel = (int) (colors[i] >>> (32 + shift)) & 0xFF;
+                        min = Math.min(min, channel);
+                        max = Math.max(max, channel);
+                    }
+                    if (max - min > widestRange) {
+                        widest = b;
+                        widestRange = max - min;
+                        widestShift = shift;
+                    }
+                }
+            }
+            if (widest < 0) break;
+
+            // sort the box by the widest channel, carried in the top byte with its sign bit
+            // flipped so that the signed sort puts 128-255 after 0-127
+            for (int i = from[widest]; i < to[widest]; i++) {
+                colors[i] |= (((colors[i] >>> (32 + widestShift)) & 0xFF) << 56) ^ Long.MIN_VALUE;
+            }
+            Arrays.sort(colors, from[widest], to[widest]);
+            long population = 0;
+            for (int i = from[widest]; i < to[widest]; i++) {
+                colors[i] &= 0x00FFFFFFFFFFFFFFL;
+                population += (int) colors[i];
+            }
+            long seen = 0;
+            int split = from[widest] + 1;
+            while (split < to[widest] - 1 && (seen += (int) colors[split - 1]) < population / 2) {
+                split++;
+            }
+            from[boxes] = split;
+            to[boxes] = to[widest];
+            to[widest] = split;
+            boxes++;
+        }
+
+        int[] palette = new int[PALETTE_SIZE];
+        for (int b = 0; b < boxes; b++) {
+            long r = 0;
+            long g = 0;
+            long bl = 0;
+            long count = 0;
+            for (int i = from[b]; i < to[b]; i++) {
+                int color = (int) (colors[i] >>> 32);
+                int n = (int) colors[i];
+                r += (long) ((color >>> 16) & 0xFF) * n;
+                g += (long) ((color >>> 8) & 0xFF) * n;
+                bl += (long) (color & 0xFF) * n;
+                count += n;
+            }
+            palette[b] = (int) ((r + count / 2) / count) << 16 | (int) ((g + count / 2) / count) << 8
+                    | (int) ((bl + count / 2) / count);
+        }
+        return palette;
+    }
+
+    /**
+     * One worker's buffers: the indexed frame, the LZW string table and the output.
+     */
+    private static final class Lzw {
+        final byte[] pixels;
+        private final int[] keys = new int[1 << HASH_BITS];
+        private final short[] codes = new short[1 << HASH_BITS];
+        private byte[] out;
+        private int size;
+        private final byte[] block = new byte[255];
+        private int blockSize;
+        private int bits;
+        private int bitCount;
+
+        Lzw(int pixelCount) {
+            this.pixels = new byte[pixelCount];
+            this.out = new byte[pixelCount / 4 + 1024];
+        }
+
+        /**
+         * Graphic control extension, image descriptor and compressed pixels of one frame.
+         */
+        byte[] imageBlock(int width, int height, int delayCentis) {
+            size = 0;
+            put(0x21);
+            put(0xF9);
+            put(4);
+            put(0);
+            put(delayCentis & 0xFF);
+            put(delayCentis >>> 8);
+            put(0);
+            put(0);
+
+            put(0x2C);
+            putShort(0);
+            putShort(0);
+            putShort(width);
+            putShort(height);
+            put(0);
+
+            put(MIN_CODE_SIZE);
+            compress(width * height);
+            put(0);
+            return Arrays.copyOf(out, size);
+        }
+
+        private void compress(int length) {
+            Arrays.fill(keys, -1);
+            int codeSize = MIN_CODE_SIZE + 1;
+            int next = END + 1;
+            writeCode(CLEAR, codeSize);
+
+            int prefix = pixels[0] & 0xFF;
+            for (int i = 1; i < length; i++) {
+                int pixel = pixels[i] & 0xFF;
+                int key = prefix << 8 | pixel;
+                int slot = (key * 0x9E3779B1) >>> (32 - HASH_BITS);
+                while (keys[slot] != -1 && keys[slot] != key) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                if (keys[slot] == key) {
+                    prefix = codes[slot];
+                    continue;
+                }
+
+                writeCode(prefix, codeSize);
+                if (next < MAX_CODES) {
+                    // the decoder widens its codes once its table reaches this size
+                    if (next == 1 << codeSize) codeSize++;
+                    keys[slot] = key;
+                    codes[slot] = (short) next++;
+                } else {
+                    writeCode(CLEAR, codeSize);
+                    Arrays.fill(keys, -1);
+                    codeSize = MIN_CODE_SIZE + 1;
+                    next = END + 1;
+                }
+                prefix = pixel;
+            }
+            writeCode(prefix, codeSize);
+            if (next == 1 << codeSize && codeSize < 12) codeSize++;
+            writeCode(END, codeSize);
+
+            if (bitCount > 0) {
+                writeByte(bits);
+                bits = 0;
+                bitCount = 0;
+            }
+            if (blockSize > 0) {
+                flushBlock();
+            }
+        }
+
+        private void writeCode(int code, int codeSize) {
+            bits |= code << bitCount;
+            bitCount += codeSize;
+            while (bitCount >= 8) {
+                writeByte(bits & 0xFF);
+                bits >>>= 8;
+                bitCount -= 8;
+            }
+        }
+
+        private void writeByte(int b) {
+            block[blockSize++] = (byte) b;
+            if (blockSize == block.length) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() {
+            put(blockSize);
+            if (size + blockSize > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, size + blockSize));
+            }
+            System.arraycopy(block, 0, out, size, blockSize);
+            size += blockSize;
+            blockSize = 0;
+        }
+
+        private void put(int b) {
+            if (size == out.length) {
+                out = Arrays.copyOf(out, size * 2);
+            }
+            out[size++] = (byte) b;
+        }
+
+        private void putShort(int value) {
+            put(value & 0xFF);
+            put(value >>> 8);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ta.tugasakhir;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer, single-consumer ring of timestamped direction changes. The
+ * producer - the FX thread, a bot or a network reader - offers presses as they happen and
+ * the game loop takes at most one per tick, so two quick presses within one tick become two
+ * turns on consecutive ticks instead of the second overwriting the first.
+ * <p>
+ * Lock-free: each side only writes its own index and publishes it with an ordered store.
+ * With more than one producer, give each its own queue.
+ */
+public final class InputQueue {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int mask;
+    private final byte[] directions;
+    private final long[] timestamps;
+    /** Next slot to write; only the producer advances it. */
+    private final AtomicLong head = new AtomicLong();
+    /** Next slot to read; only the consumer advances it. */
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedTail;
+
+    private long lastLatencyNanos;
+    private long dropped;
+
+    public InputQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.directions = new byte[size];
+        this.timestamps = new long[size];
+    }
+
+    /**
+     * Producer side.
+     *
+     * @return false if the queue was full and the press was dropped
+     */
+    public boolean offer(Direction direction, long nanos) {
+        long h = head.get();
+        if (h - cachedTail > mask) {
+            cachedTail = tail.get();
+            if (h - cachedTail > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int slot = (int) h & mask;
+        directions[slot] = (byte) direction.ordinal();
+        timestamps[slot] = nanos;
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side: takes the first queued press that turns away from {@code current},
+     * the direction applied on the last tick. Presses that repeat it or would reverse into
+     * the body are discarded on the way.
+     *
+     * @return the turn to apply this tick, or null if there is none
+     */
+    public Direction poll(Direction current, long nanos) {
+        long t = tail.get();
+        long h = head.get();
+        while (t < h) {
+            int slot = (int) t & mask;
+            Direction direction = DIRECTIONS[directions[slot]];
+            long pressed = timestamps[slot];
+            t++;
+            if (direction != current && direction != current.opposite()) {
+                tail.lazySet(t);
+                lastLatencyNanos = nanos - pressed;
+                return direction;
+            }
+        }
+        tail.lazySet(t);
+        return null;
+    }
+
+    /**
+     * Consumer side: forgets every queued press, e.g. on restart.
+     */
+    public void clear() {
+        tail.lazySet(head.get());
+    }
+
+    /**
+     * Time from the press to the tick that applied it, for the last applied press.
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    /**
+     * Presses dropped because the queue was full. Read it from the producer's thread.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,83 @@
+package ta.tugasakhir;
+
+/**
+ * Log-linear histogram of nanosecond latencies in the style of HdrHistogram: exact below
+ * {@value #SUB_BUCKETS} ns, then {@value #SUB_BUCKETS} buckets per power of two, so every
+ * value is kept to within about 3% using a fixed 15 KB array. Recording is a couple of shifts
+ * and one increment.
+ * <p>
+ * Written by one thread. Other threads may read it while it is being written; they see a
+ * slightly stale but never corrupt distribution.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS) * SUB_BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[index(value)]++;
+        total++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    static int index(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (magnitude < SUB_BITS) {
+            return (int) value;
+        }
+        int shift = magnitude - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Middle of the range of values that fall into a bucket.
+     */
+    static long valueAt(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long low = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return low + (1L << shift) / 2;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency that {@code percentile} percent of recorded values do not exceed
+     */
+    public long percentile(double percentile) {
+        long count = total;
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(valueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        long count = total;
+        return count == 0 ? 0 : (double) sum / count;
+    }
+}
@@ -0,0 +1,371 @@
+package ta.tugasakhir;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent high scores: an append-only file of checksummed records, indexed in memory by
+ * an order-statistic treap so adding a score, asking for its rank and reading the top K are
+ * all O(log n + K) even with millions of entries.
+ * <p>
+ * Records are only ever appended, each carrying a CRC32 of its fields, so a write cut short
+ * by a crash leaves at most one damaged record at the end; {@link #open} drops it and
+ * everything after it. Only scores live in memory; the other fields are read back from the
+ * file for the few entries {@link #top} returns.
+ * <p>
+ * Not thread-safe. The UI keeps it on a background thread of its own.
+ */
+public final class Leaderboard implements Closeable {
+
+    public static final class Entry {
+        public final int rank;
+        public final int score;
+        public final int length;
+        public final long durationMillis;
+        public final long seed;
+        public final long date;
+
+        Entry(int rank, int score, int length, long durationMillis, long seed, long date) {
+            this.rank = rank;
+            this.score = score;
+            this.length = length;
+            this.durationMillis = durationMillis;
+            this.seed = seed;
+            this.date = date;
+        }
+    }
+
+    static final int MAGIC = 0x534E4B4C;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    /** score, length, duration, seed, date, crc, reserved */
+    static final int RECORD_SIZE = 40;
+    private static final int CRC_OFFSET = 32;
+
+    private final FileChannel channel;
+    private final ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 1024);
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final GameRandom random = new GameRandom(0x5EEDL);
+
+    private int size;
+    private int written;
+    private int root = -1;
+    private int[] scores = new int[1024];
+    private int[] priority = new int[1024];
+    private int[] left = new int[1024];
+    private int[] right = new int[1024];
+    private int[] subtree = new int[1024];
+
+    private Leaderboard(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens or creates the file and indexes every intact record in it.
+     */
+    public static Leaderboard open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Leaderboard leaderboard = new Leaderboard(channel);
+        try {
+            leaderboard.load();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return leaderboard;
+    }
+
+    private void load() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).put(VERSION).put((byte) 0).putShort((short) RECORD_SIZE).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+            return;
+        }
+
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a leaderboard file");
+        }
+        if (data.get(4) != VERSION || data.getShort(6) != RECORD_SIZE) {
+            throw new IOException("Unsupported leaderboard version " + data.get(4));
+        }
+
+        long records = (data.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        int valid = 0;
+        ByteBuffer fields = data.duplicate();
+        int[] loaded = new int[(int) Math.min(records, Integer.MAX_VALUE - 8)];
+        while (valid < loaded.length) {
+            int at = HEADER_SIZE + valid * RECORD_SIZE;
+            fields.limit(at + CRC_OFFSET).position(at);
+            crc.reset();
+            crc.update(fields);
+            if ((int) crc.getValue() != data.getInt(at + CRC_OFFSET)) break;
+            loaded[valid++] = data.getInt(at);
+        }
+        build(loaded, valid);
+        written = valid;
+
+        long end = HEADER_SIZE + (long) valid * RECORD_SIZE;
+        if (channel.size() != end) {
+            // a torn or corrupt tail from a crash mid-write
+            channel.truncate(end);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Adds a finished game. It is buffered; {@link #flush} makes it durable.
+     *
+     * @return the game's rank, 1 being the best; ties rank behind older entries
+     */
+    public int add(int score, int length, long durationMillis, long seed, long date) throws IOException {
+        if (!pending.hasRemaining()) {
+            writePending();
+        }
+        int start = pending.position();
+        pending.putInt(score).putInt(length).putLong(durationMillis).putLong(seed).putLong(date);
+        crc.reset();
+        crc.update(pending.array(), start, CRC_OFFSET);
+        pending.putInt((int) crc.getValue()).putInt(0);
+
+        int id = insert(score);
+        return rankOf(id);
+    }
+
+    /**
+     * The rank a game with this score would get if it were added now.
+     */
+    public int rank(int score) {
+        int ahead = 0;
+        int node = root;
+        while (node >= 0) {
+            if (scores[node] >= score) {
+                ahead += sizeOf(left[node]) + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return ahead + 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int bestScore() {
+        if (root < 0) return 0;
+        int node = root;
+        while (left[node] >= 0) {
+            node = left[node];
+        }
+        return scores[node];
+    }
+
+    /**
+     * The best {@code k} entries, best first.
+     */
+    public List<Entry> top(int k) throws IOException {
+        writePending();
+        List<Entry> entries = new ArrayList<>(Math.min(k, size));
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        while ((node >= 0 || depth > 0) && entries.size() < k) {
+            while (node >= 0) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = left[node];
+            }
+            node = stack[--depth];
+            entries.add(readEntry(entries.size() + 1, node));
+            node = right[node];
+        }
+        return entries;
+    }
+
+    private Entry readEntry(int rank, int id) throws IOException {
+        record.clear();
+        long at = HEADER_SIZE + (long) id * RECORD_SIZE;
+        while (record.hasRemaining()) {
+            if (channel.read(record, at + record.position()) < 0) {
+                throw new IOException("Leaderboard entry " + id + " is missing");
+            }
+        }
+        return new Entry(rank, record.getInt(0), record.getInt(4), record.getLong(8),
+                record.getLong(16), record.getLong(24));
+    }
+
+    private void writePending() throws IOException {
+        pending.flip();
+        long at = HEADER_SIZE + (long) written * RECORD_SIZE;
+        while (pending.hasRemaining()) {
+            at += channel.write(pending, at);
+        }
+        pending.clear();
+        written = size;
+    }
+
+    /**
+     * Writes buffered entries and forces them to disk.
+     */
+    public void flush() throws IOException {
+        writePending();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    // order-statistic treap: in-order is best first, node ids are record indexes
+
+    /**
+     * Indexes a whole file at once: sorts the entries, builds a perfectly balanced tree over
+     * them and hands out random priorities largest-first by depth, which is the treap those
+     * priorities define. Much faster than inserting millions of entries one by one.
+     */
+    private void build(int[] loaded, int count) {
+        int capacity = Math.max(scores.length, Integer.highestOneBit(Math.max(count, 1)) << 1);
+        scores = Arrays.copyOf(loaded, capacity);
+        priority = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        subtree = new int[capacity];
+        size = count;
+        if (count == 0) return;
+
+        long[] order = new long[count];
+        for (int id = 0; id < count; id++) {
+            // best score first, older entry first among equals
+            order[id] = ((long) -loaded[id] << 32) | id;
+        }
+        Arrays.sort(order);
+
+        int[] depth = new int[count];
+        int[] levels = new int[33];
+        root = build(order, 0, count, 0, depth, levels);
+
+        int[] random = new int[count];
+        for (int i = 0; i < count; i++) {
+            random[i] = this.random.nextInt(Integer.MAX_VALUE);
+        }
+        Arrays.sort(random);
+        // levels[d] becomes the index of the next priority handed to depth d, counting down
+        int next = count;
+        for (int d = 0; d < levels.length; d++) {
+            int nodes = levels[d];
+            levels[d] = next;
+            next -= nodes;
+        }
+        for (int id = 0; id < count; id++) {
+            priority[id] = random[--levels[depth[id]]];
+        }
+    }
+
+    private int build(long[] order, int from, int to, int level, int[] depth, int[] levels) {
+        if (from >= to) return -1;
+        int mid = (from + to) >>> 1;
+        int node = (int) order[mid];
+        depth[node] = level;
+        levels[level]++;
+        left[node] = build(order, from, mid, level + 1, depth, levels);
+        right[node] = build(order, mid + 1, to, level + 1, depth, levels);
+        subtree[node] = to - from;
+        return node;
+    }
+
+    private int insert(int score) {
+        int id = size++;
+        if (id == scores.length) {
+            int capacity = id * 2;
+            scores = Arrays.copyOf(scores, capacity);
+            priority = Arrays.copyOf(priority, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            subtree = Arrays.copyOf(subtree, capacity);
+        }
+        scores[id] = score;
+        priority[id] = random.nextInt(Integer.MAX_VALUE);
+        left[id] = -1;
+        right[id] = -1;
+        subtree[id] = 1;
+        root = insert(root, id);
+        return id;
+    }
+
+    /**
+     * Recursive insert; the depth is O(log n) with high probability.
+     */
+    private int insert(int node, int id) {
+        if (node < 0) return id;
+        subtree[node]++;
+        // a new entry is never ahead of an equal older one
+        if (scores[id] > scores[node]) {
+            left[node] = insert(left[node], id);
+            if (priority[left[node]] > priority[node]) {
+                node = rotateRight(node);
+            }
+        } else {
+            right[node] = insert(right[node], id);
+            if (priority[right[node]] > priority[node]) {
+                node = rotateLeft(node);
+            }
+        }
+        return node;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        subtree[pivot] = subtree[node];
+        subtree[node] = sizeOf(left[node]) + sizeOf(right[node]) + 1;
+        return pivot;
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        subtree[pivot] = subtree[node];
+        subtree[node] = sizeOf(left[node]) + sizeOf(right[node]) + 1;
+        return pivot;
+    }
+
+    private int sizeOf(int node) {
+        return node < 0 ? 0 : subtree[node];
+    }
+
+    private int rankOf(int id) {
+        int ahead = 0;
+        int node = root;
+        while (node != id) {
+            if (scores[id] > scores[node] || (scores[id] == scores[node] && id < node)) {
+                node = left[node];
+            } else {
+                ahead += sizeOf(left[node]) + 1;
+                node = right[node];
+            }
+        }
+        return ahead + sizeOf(left[id]) + 1;
+    }
+}
@@ -0,0 +1,423 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Monte Carlo tree search bot. Each decision searches the three moves - turn left, go
+ * straight, turn right - for a fixed time budget and takes the one visited most.
+ * <p>
+ * The search is open-loop: tree nodes stand for move sequences rather than board states,
+ * and every iteration replays its sequence from a copy of the real game. Before each
+ * replay the copy gets a fresh generator state, so the food respawns and the rock spawns every
+ * {@link GameEngine#ROCK_SPAWN_INTERVAL} are sampled as the real game would draw them,
+ * not read off its actual generator. Below the tree a rollout plays on with a cheap
+ * food-seeking policy for a fixed horizon.
+ * <p>
+ * The search is root-parallel. Every worker grows its own tree, in preallocated arrays, on
+ * its own engine, and the root visit counts are summed at the end. The calling thread
+ * searches too. The real game is copied with {@link Snapshot#write} into one pooled buffer
+ * per decision, which each worker reads into its own engine once and marks. Iterations then
+ * {@link GameEngine#rewind rewind} to the mark, undoing only the cells, foods and rocks the
+ * last one changed and copying the snake back, so a restore costs the moves played and the
+ * snake's length, not the size of the board or how many rocks are on it.
+ */
+public final class MctsPlanner implements Policy {
+
+    public static final long DEFAULT_BUDGET_NANOS = 5_000_000;
+    public static final int DEFAULT_HORIZON = 30;
+    private static final int MAX_NODES = 1 << 16;
+    private static final int MOVES = 3;
+    private static final double EXPLORATION = 0.3;
+    private static final double DISCOUNT = 0.9;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Direction[] LEFT_OF = new Direction[DIRECTIONS.length];
+    private static final Direction[] RIGHT_OF = new Direction[DIRECTIONS.length];
+
+    static {
+        for (Direction direction : DIRECTIONS) {
+            for (Direction turn : DIRECTIONS) {
+                if (turn.dx == direction.dy && turn.dy == -direction.dx) LEFT_OF[direction.ordinal()] = turn;
+                if (turn.dx == -direction.dy && turn.dy == direction.dx) RIGHT_OF[direction.ordinal()] = turn;
+            }
+        }
+    }
+
+    private final long budgetNanos;
+    private final int horizon;
+    private final Worker[] workers;
+    private final ExecutorService pool;
+    private final Future<?>[] running;
+    private final GameRandom random;
+    private ByteBuffer root = ByteBuffer.allocateDirect(1 << 12);
+    private int rolloutLimit;
+
+    private long decisions;
+    private long rollouts;
+    private long searchNanos;
+
+    public MctsPlanner() {
+        this(DEFAULT_BUDGET_NANOS, DEFAULT_HORIZON, Runtime.getRuntime().availableProcessors(), System.nanoTime());
+    }
+
+    /**
+     * @param budgetNanos time each decision may take
+     * @param horizon     ticks simulated past the root, tree and rollout together
+     * @param threads     searching threads, the caller included
+     * @param seed        seeds the sampled futures
+     */
+    public MctsPlanner(long budgetNanos, int horizon, int threads, long seed) {
+        this.budgetNanos = budgetNanos;
+        this.horizon = horizon;
+        this.random = new GameRandom(seed);
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker();
+        }
+        this.running = new Future<?>[threads];
+        if (threads > 1) {
+            AtomicInteger count = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(threads - 1, task -> {
+                Thread thread = new Thread(task, "mcts-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            pool = null;
+        }
+    }
+
+    /**
+     * Searches a fixed number of rollouts per decision, split over the threads, instead of
+     * for the time budget; with one thread the bot then plays deterministically. 0 goes back
+     * to the time budget.
+     */
+    public void setRolloutLimit(int rollouts) {
+        this.rolloutLimit = rollouts;
+    }
+
+    /**
+     * Restarts the sampled futures from {@code seed}, as a new planner created with it would,
+     * so one planner and its preallocated trees can play game after game.
+     */
+    public void reseed(long seed) {
+        random.setState(seed);
+    }
+
+    @Override
+    public Direction nextDirection(GameEngine game) {
+        long start = System.nanoTime();
+        int size = Snapshot.sizeOf(game);
+        if (root.capacity() < size) {
+            root = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        root.clear();
+        Snapshot.write(game, root);
+        root.flip();
+
+        long deadline = start + budgetNanos;
+        int limit = rolloutLimit == 0 ? Integer.MAX_VALUE : Math.max(1, rolloutLimit / workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].prepare(root, random.nextLong(), deadline, limit);
+        }
+        for (int i = 1; i < workers.length; i++) {
+            running[i] = pool.submit(workers[i]);
+        }
+        workers[0].run();
+        for (int i = 1; i < workers.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException e) {
+                cancel(i);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while searching", e);
+            } catch (ExecutionException e) {
+                cancel(i + 1);
+                throw new IllegalStateException("Search failed", e.getCause());
+            }
+        }
+
+        int best = 1;
+        long bestVisits = -1;
+        for (int move = 0; move < MOVES; move++) {
+            long visits = 0;
+            for (Worker worker : workers) {
+                visits += worker.visits[1 + move];
+            }
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                best = move;
+            }
+        }
+        for (Worker worker : workers) {
+            rollouts += worker.iterations;
+        }
+        decisions++;
+        searchNanos += System.nanoTime() - start;
+        return move(game.getCurrentDirection(), best);
+    }
+
+    /**
+     * Stops the workers from {@code from} on, so none is still searching when the next
+     * decision hands it a new root.
+     */
+    private void cancel(int from) {
+        for (int i = from; i < workers.length; i++) {
+            running[i].cancel(true);
+        }
+    }
+
+    private static Direction move(Direction current, int move) {
+        switch (move) {
+            case 0: return LEFT_OF[current.ordinal()];
+            case 1: return current;
+            default: return RIGHT_OF[current.ordinal()];
+        }
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getRollouts() {
+        return rollouts;
+    }
+
+    public double getRolloutsPerSecond() {
+        return rollouts * 1e9 / Math.max(1, searchNanos);
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One search thread's tree and game copy. Node 0 is the root and its children are always
+     * nodes 1 to 3, one per move, so the root counts can be summed across workers.
+     */
+    private final class Worker implements Runnable {
+        final int[] children = new int[MAX_NODES * MOVES];
+        final int[] visits = new int[MAX_NODES];
+        final double[] values = new double[MAX_NODES];
+        private final int[] path = new int[horizon + 1];
+        private int nodes;
+        private final GameRandom random = new GameRandom(0);
+        private GameEngine engine;
+        private ByteBuffer snapshot;
+        private long deadline;
+        private int limit;
+        int iterations;
+
+        private final Consumer<Point> nearestFood = this::considerFood;
+        private int headX;
+        private int headY;
+        private int foodX;
+        private int foodY;
+        private int foodDistance;
+
+        void prepare(ByteBuffer root, long seed, long deadline, int limit) {
+            // a view of our own, as workers read the shared buffer concurrently
+            this.snapshot = root.duplicate();
+            this.random.setState(seed);
+            this.deadline = deadline;
+            this.limit = limit;
+            this.iterations = 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                snapshot.rewind();
+                engine = Snapshot.read(snapshot, engine);
+                engine.mark();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            nodes = 1;
+            visits[0] = 0;
+            values[0] = 0;
+            expand(0);
+
+            while (iterations < limit && nodes + MOVES <= MAX_NODES
+                    && (limit != Integer.MAX_VALUE || System.nanoTime() < deadline)) {
+                iterate();
+                iterations++;
+            }
+        }
+
+        private void expand(int node) {
+            for (int move = 0; move < MOVES; move++) {
+                int child = nodes++;
+                children[node * MOVES + move] = child;
+                children[child * MOVES] = 0;
+                visits[child] = 0;
+                values[child] = 0;
+            }
+        }
+
+        private void iterate() {
+            engine.rewind();
+            engine.reseed(random.nextLong());
+
+            int node = 0;
+            int depth = 0;
+            boolean alive = true;
+            double reward = 0;
+            double weight = 1;
+            // tree: follow UCT down to a node seen for the first time, expanding on the second visit
+            while (alive && depth < horizon) {
+                if (node != 0 && children[node * MOVES] == 0) {
+                    if (visits[node] == 0 || nodes + MOVES > MAX_NODES) break;
+                    expand(node);
+                }
+                int move = select(node);
+                int eaten = engine.getFoodsEaten();
+                engine.steer(move(engine.getCurrentDirection(), move));
+                alive = engine.tick();
+                reward += weight * (engine.getFoodsEaten() - eaten);
+                weight *= DISCOUNT;
+                node = children[node * MOVES + move];
+                path[++depth] = node;
+            }
+            int treeDepth = depth;
+            // rollout
+            while (alive && depth < horizon) {
+                int eaten = engine.getFoodsEaten();
+                engine.steer(rolloutMove());
+                alive = engine.tick();
+                reward += weight * (engine.getFoodsEaten() - eaten);
+                weight *= DISCOUNT;
+                depth++;
+            }
+
+            // surviving the horizon beats any food; dying late beats dying early. Food counts
+            // by how soon it is eaten, not by its points, or a special food anywhere in reach
+            // would make every move look the same
+            double value = alive ? 0.4 + 0.6 * Math.min(1, reward) : 0.3 * depth / horizon;
+            visits[0]++;
+            values[0] += value;
+            for (int i = 1; i <= treeDepth; i++) {
+                visits[path[i]]++;
+                values[path[i]] += value;
+            }
+        }
+
+        /**
+         * UCT, trying each unvisited move first, starting at a random one.
+         */
+        private int select(int node) {
+            int first = children[node * MOVES];
+            int offset = random.nextInt(MOVES);
+            for (int i = 0; i < MOVES; i++) {
+                int move = (offset + i) % MOVES;
+                if (visits[first + move] == 0) return move;
+            }
+
+            double logVisits = Math.log(visits[node]);
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int move = 0; move < MOVES; move++) {
+                int child = first + move;
+                double score = values[child] / visits[child]
+                        + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = move;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Mostly heads for the nearest food, sometimes turns at random; never into a
+         * wall when a safe move exists.
+         */
+        private Direction rolloutMove() {
+            Direction current = engine.getCurrentDirection();
+            int head = engine.getSnake().head();
+            headX = head % engine.getWidth();
+            headY = head / engine.getWidth();
+            foodDistance = Integer.MAX_VALUE;
+            if (random.nextInt(4) != 0) {
+                engine.getFoodIndex().forEach(nearestFood);
+            }
+
+            Direction chosen = null;
+            int safe = 0;
+            int offset = random.nextInt(MOVES);
+            for (int i = 0; i < MOVES; i++) {
+                Direction move = move(current, (offset + i) % MOVES);
+                if (engine.wouldCollide(move)) continue;
+                safe++;
+                if (chosen == null) chosen = move;
+                if (foodDistance != Integer.MAX_VALUE
+                        && (foodX - headX) * move.dx + (foodY - headY) * move.dy > 0) {
+                    return move;
+                }
+            }
+            return safe == 0 ? current : chosen;
+        }
+
+        private void considerFood(Point food) {
+            int distance = Math.abs(food.x - headX) + Math.abs(food.y - headY);
+            if (distance < foodDistance) {
+                foodDistance = distance;
+                foodX = food.x;
+                foodY = food.y;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: MctsPlanner [--games=N] [--width=W] [--height=H] [--seed=S] "
+                        + "[--max-ticks=T] [--budget-ms=MS] [--horizon=N] [--threads=N] [--rollouts=N]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        int games = Integer.parseInt(options.getOrDefault("games", "1"));
+        int width = Integer.parseInt(options.getOrDefault("width", "20"));
+        int height = Integer.parseInt(options.getOrDefault("height", "15"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        long maxTicks = Long.parseLong(options.getOrDefault("max-ticks", "2000"));
+        double budgetMillis = Double.parseDouble(options.getOrDefault("budget-ms", "5"));
+        int horizon = Integer.parseInt(options.getOrDefault("horizon", String.valueOf(DEFAULT_HORIZON)));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        MctsPlanner planner = new MctsPlanner((long) (budgetMillis * 1e6), horizon, threads, seed);
+        planner.setRolloutLimit(Integer.parseInt(options.getOrDefault("rollouts", "0")));
+        try {
+            for (int i = 0; i < games; i++) {
+                GameEngine engine = new GameEngine(width, height, BatchSimulator.gameSeed(seed, i));
+                while (engine.getTicks() < maxTicks) {
+                    engine.steer(planner.nextDirection(engine));
+                    if (!engine.tick()) break;
+                }
+                System.out.printf("game %d: score=%d length=%d ticks=%d%s%n", i, engine.getScore(),
+                        engine.getSnake().size(), engine.getTicks(), engine.isGameOver() ? "" : " (alive)");
+            }
+        } finally {
+            planner.shutdown();
+        }
+        System.out.printf("decisions=%d rollouts=%d (%.0f rollouts/s, %.0f per decision)%n",
+                planner.getDecisions(), planner.getRollouts(), planner.getRolloutsPerSecond(),
+                (double) planner.getRollouts() / Math.max(1, planner.getDecisions()));
+    }
+}
@@ -0,0 +1,304 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms for tick, render and spawn, counters for spawn attempts and
+ * collisions, and the process's GC and allocation rate. Instrumented code only holds a
+ * Metrics when it is switched on - the engine and the game loop skip even the clock reads
+ * when theirs is null - so leaving it off costs a null check.
+ * <p>
+ * The histograms and counters are written by the game thread only. The counters are volatile,
+ * as JMX and the sampler read them from their own threads; with a single writer a plain
+ * increment of a volatile is still exact. A daemon sampler thread reads GC and allocation
+ * figures once per period and, if asked, appends a CSV or JSON-lines row to a dump file.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    public static final long DEFAULT_SAMPLE_MILLIS = 1000;
+    static final String OBJECT_NAME = "ta.tugasakhir:type=Metrics";
+
+    final LatencyHistogram tick = new LatencyHistogram();
+    final LatencyHistogram render = new LatencyHistogram();
+    final LatencyHistogram spawn = new LatencyHistogram();
+    private volatile long spawnAttempts;
+    private volatile long spawnRetries;
+    private volatile long spawnFailures;
+    private volatile long collisions;
+
+    private volatile long gcCount;
+    private volatile long gcMillis;
+    private volatile double allocationRate;
+    private long lastAllocated = -1;
+    private long lastSampleNanos;
+
+    /** The instance registered over JMX, so stopping an older one leaves its successor. */
+    private static Metrics registered;
+
+    private ScheduledExecutorService sampler;
+    private Path dumpFile;
+    private boolean dumpJson;
+
+    /**
+     * One spawn call: how long it took, how many candidate cells it tried and whether it
+     * placed anything.
+     */
+    void recordSpawn(long nanos, int attempts, boolean placed) {
+        spawn.record(nanos);
+        spawnAttempts += attempts;
+        if (attempts > 1) {
+            spawnRetries += attempts - 1;
+        }
+        if (!placed) {
+            spawnFailures++;
+        }
+    }
+
+    void recordCollision() {
+        collisions++;
+    }
+
+    /**
+     * Starts sampling GC and allocation figures, appending a row to {@code dumpFile} each
+     * time when it is not null. A {@code .json} file gets one JSON object per line, anything
+     * else CSV.
+     */
+    public synchronized void start(long periodMillis, Path dumpFile) throws IOException {
+        if (sampler != null) return;
+        this.dumpFile = dumpFile;
+        this.dumpJson = dumpFile != null && dumpFile.toString().endsWith(".json");
+        if (dumpFile != null && !dumpJson) {
+            Files.write(dumpFile, (csvHeader() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling and unregisters the MBean if {@link #registerMBean} registered this one.
+     */
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+        synchronized (Metrics.class) {
+            if (registered != this) return;
+            registered = null;
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                System.err.println("Could not unregister " + OBJECT_NAME + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void sample() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        gcCount = count;
+        gcMillis = millis;
+
+        long now = System.nanoTime();
+        long allocated = allocatedBytes();
+        if (lastAllocated >= 0 && allocated >= 0 && now > lastSampleNanos) {
+            allocationRate = Math.max(0, allocated - lastAllocated) / 1e6 / ((now - lastSampleNanos) / 1e9);
+        }
+        lastAllocated = allocated;
+        lastSampleNanos = now;
+
+        if (dumpFile != null) {
+            String row = dumpJson ? toJson() : toCsvRow();
+            try (Writer out = Files.newBufferedWriter(dumpFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(row);
+                out.write('\n');
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + dumpFile + ": " + e.getMessage());
+                dumpFile = null;
+            }
+        }
+    }
+
+    /**
+     * Bytes allocated by all live threads so far, or -1 where the JVM cannot tell. Threads
+     * that ended take their count with them, hence the clamp on the rate.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemoryEnabled()) {
+                long total = 0;
+                for (long bytes : hotspot.getThreadAllocatedBytes(hotspot.getAllThreadIds())) {
+                    total += Math.max(0, bytes);
+                }
+                return total;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Registers this instance as {@value #OBJECT_NAME}, replacing any earlier one.
+     */
+    public void registerMBean() throws JMException {
+        synchronized (Metrics.class) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registered = this;
+        }
+    }
+
+    static String csvHeader() {
+        return "time_ms,ticks,tick_p50_us,tick_p99_us,tick_max_us,render_p50_us,render_p99_us,"
+                + "spawn_p50_us,spawn_p99_us,spawn_attempts,spawn_retries,spawn_failures,collisions,"
+                + "gc_count,gc_ms,alloc_mb_s";
+    }
+
+    String toCsvRow() {
+        return String.format(Locale.ROOT, "%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d,%d,%d,%d,%d,%.2f",
+                System.currentTimeMillis(), getTicks(), getTickP50Micros(), getTickP99Micros(),
+                getTickMaxMicros(), getRenderP50Micros(), getRenderP99Micros(), getSpawnP50Micros(),
+                getSpawnP99Micros(), spawnAttempts, spawnRetries, spawnFailures, collisions,
+                gcCount, gcMillis, allocationRate);
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT, "{\"time_ms\":%d,\"ticks\":%d,"
+                        + "\"tick_us\":{\"p50\":%.1f,\"p99\":%.1f,\"max\":%.1f},"
+                        + "\"render_us\":{\"p50\":%.1f,\"p99\":%.1f},"
+                        + "\"spawn_us\":{\"p50\":%.1f,\"p99\":%.1f},"
+                        + "\"spawn_attempts\":%d,\"spawn_retries\":%d,\"spawn_failures\":%d,\"collisions\":%d,"
+                        + "\"gc_count\":%d,\"gc_ms\":%d,\"alloc_mb_s\":%.2f}",
+                System.currentTimeMillis(), getTicks(), getTickP50Micros(), getTickP99Micros(),
+                getTickMaxMicros(), getRenderP50Micros(), getRenderP99Micros(), getSpawnP50Micros(),
+                getSpawnP99Micros(), spawnAttempts, spawnRetries, spawnFailures, collisions,
+                gcCount, gcMillis, allocationRate);
+    }
+
+    /**
+     * Short multi-line summary for the overlay.
+     */
+    String describe() {
+        return String.format(Locale.ROOT, "TICK   p50 %.1f p99 %.1f us%n"
+                        + "RENDER p50 %.1f p99 %.1f us%n"
+                        + "SPAWN  p99 %.1f us  RETRY %d%n"
+                        + "COLLIDE %d%n"
+                        + "GC     %d (%d ms)%n"
+                        + "ALLOC  %.1f MB/s",
+                getTickP50Micros(), getTickP99Micros(), getRenderP50Micros(), getRenderP99Micros(),
+                getSpawnP99Micros(), spawnRetries, collisions, gcCount, gcMillis, allocationRate);
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    @Override
+    public double getTickP50Micros() {
+        return micros(tick.percentile(50));
+    }
+
+    @Override
+    public double getTickP99Micros() {
+        return micros(tick.percentile(99));
+    }
+
+    @Override
+    public double getTickMaxMicros() {
+        return micros(tick.getMax());
+    }
+
+    @Override
+    public double getRenderP50Micros() {
+        return micros(render.percentile(50));
+    }
+
+    @Override
+    public double getRenderP99Micros() {
+        return micros(render.percentile(99));
+    }
+
+    @Override
+    public double getSpawnP50Micros() {
+        return micros(spawn.percentile(50));
+    }
+
+    @Override
+    public double getSpawnP99Micros() {
+        return micros(spawn.percentile(99));
+    }
+
+    @Override
+    public long getTicks() {
+        return tick.getCount();
+    }
+
+    @Override
+    public long getSpawnAttempts() {
+        return spawnAttempts;
+    }
+
+    @Override
+    public long getSpawnRetries() {
+        return spawnRetries;
+    }
+
+    @Override
+    public long getSpawnFailures() {
+        return spawnFailures;
+    }
+
+    @Override
+    public long getCollisions() {
+        return collisions;
+    }
+
+    @Override
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    @Override
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    @Override
+    public double getAllocationMegabytesPerSecond() {
+        return allocationRate;
+    }
+}
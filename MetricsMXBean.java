@@ -0,0 +1,38 @@
+package ta.tugasakhir;
+
+/**
+ * JMX view of {@link Metrics}, registered as {@code ta.tugasakhir:type=Metrics}. Latencies
+ * are in microseconds.
+ */
+public interface MetricsMXBean {
+
+    double getTickP50Micros();
+
+    double getTickP99Micros();
+
+    double getTickMaxMicros();
+
+    double getRenderP50Micros();
+
+    double getRenderP99Micros();
+
+    double getSpawnP50Micros();
+
+    double getSpawnP99Micros();
+
+    long getTicks();
+
+    long getSpawnAttempts();
+
+    long getSpawnRetries();
+
+    long getSpawnFailures();
+
+    long getCollisions();
+
+    long getGcCount();
+
+    long getGcMillis();
+
+    double getAllocationMegabytesPerSecond();
+}
@@ -0,0 +1,206 @@
+package ta.tugasakhir;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Wire format between {@link GameServer} and its clients.
+ * <p>
+ * Clients send two-byte messages: an op and its argument. The server sends frames of
+ * {@code [int length][byte type][payload]}, the length counting type and payload. Numbers
+ * in payloads are unsigned LEB128 varints and cell indices are packed as y * width + x.
+ * <ul>
+ * <li>{@link #FRAME_WELCOME}: width, height, max players, tick length in ms.</li>
+ * <li>{@link #FRAME_JOINED}: the client's player id.</li>
+ * <li>{@link #FRAME_KEYFRAME}: the whole arena after a tick - tick number; live snakes in
+ * id order as id, score, direction, length, head cell and one direction byte per further
+ * segment leading from the previous one; then every food and rock as a cell delta and kind.</li>
+ * <li>{@link #FRAME_DELTA}: one tick's {@link Arena} log - tick number; spawns as id, head
+ * cell and direction; one flags byte per snake that moved, in id order, so ids are implied by
+ * the snakes the client already has; placed items as ascending cell deltas and kinds.</li>
+ * </ul>
+ * A delta only makes sense on top of the previous tick's state, so a client that falls
+ * behind or gets confused is sent a keyframe instead.
+ */
+final class NetProtocol {
+
+    static final byte OP_JOIN = 1;
+    static final byte OP_STEER = 2;
+    static final byte OP_RESYNC = 3;
+
+    static final byte FRAME_WELCOME = 1;
+    static final byte FRAME_JOINED = 2;
+    static final byte FRAME_KEYFRAME = 3;
+    static final byte FRAME_DELTA = 4;
+
+    static final int MAX_FRAME_LENGTH = 64 << 20;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private NetProtocol() {
+    }
+
+    static ByteBuffer welcome(Arena arena, int tickMillis) {
+        Frame frame = new Frame(FRAME_WELCOME, 16);
+        frame.varInt(arena.getWidth());
+        frame.varInt(arena.getHeight());
+        frame.varInt(arena.getMaxPlayers());
+        frame.varInt(tickMillis);
+        return frame.finish();
+    }
+
+    static ByteBuffer joined(int playerId) {
+        Frame frame = new Frame(FRAME_JOINED, 4);
+        frame.varInt(playerId);
+        return frame.finish();
+    }
+
+    static ByteBuffer keyframe(Arena arena) {
+        Board board = arena.getBoard();
+        Frame frame = new Frame(FRAME_KEYFRAME, 256);
+        frame.varLong(arena.getTicks());
+
+        frame.varInt(arena.getLiveCount());
+        for (int id = 0; id < arena.getMaxPlayers(); id++) {
+            if (!arena.isAlive(id)) continue;
+
+            SnakeBody snake = arena.getSnake(id);
+            frame.varInt(id);
+            frame.varInt(arena.getScore(id));
+            frame.put((byte) arena.getDirection(id).ordinal());
+            frame.varInt(snake.size());
+            frame.varInt(snake.head());
+            for (int i = 1; i < snake.size(); i++) {
+                frame.put((byte) step(snake.get(i - 1), snake.get(i)).ordinal());
+            }
+        }
+
+        int items = 0;
+        int cells = board.width * board.height;
+        for (int cell = 0; cell < cells; cell++) {
+            if (isItem(board.get(cell % board.width, cell / board.width))) items++;
+        }
+        frame.varInt(items);
+        int last = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            byte kind = board.get(cell % board.width, cell / board.width);
+            if (isItem(kind)) {
+                frame.varInt(cell - last);
+                frame.put(kind);
+                last = cell;
+            }
+        }
+        return frame.finish();
+    }
+
+    /**
+     * Encodes the log of the arena's last tick. Built once per tick and shared by every
+     * client that is in sync.
+     */
+    static ByteBuffer delta(Arena arena) {
+        Board board = arena.getBoard();
+        Frame frame = new Frame(FRAME_DELTA, 16 + arena.moveCount() + 8 * arena.spawnCount());
+        frame.varLong(arena.getTicks());
+
+        frame.varInt(arena.spawnCount());
+        for (int i = 0; i < arena.spawnCount(); i++) {
+            frame.varInt(arena.spawnedId(i));
+            frame.varInt(arena.spawnedHead(i));
+            frame.put(arena.spawnedDirection(i));
+        }
+
+        frame.varInt(arena.moveCount());
+        for (int i = 0; i < arena.moveCount(); i++) {
+            frame.put(arena.moveFlags(i));
+        }
+
+        int[] placed = new int[arena.placedCount()];
+        for (int i = 0; i < placed.length; i++) {
+            placed[i] = arena.placedCell(i);
+        }
+        Arrays.sort(placed);
+        frame.varInt(placed.length);
+        int last = 0;
+        for (int cell : placed) {
+            frame.varInt(cell - last);
+            frame.put(board.get(cell % board.width, cell / board.width));
+            last = cell;
+        }
+        return frame.finish();
+    }
+
+    static boolean isItem(byte kind) {
+        return kind == Board.ROCK || Board.isFood(kind);
+    }
+
+    /**
+     * Direction of the step from one cell to a neighbouring one.
+     */
+    static Direction step(int from, int to) {
+        int delta = to - from;
+        if (delta == 1) return Direction.RIGHT;
+        if (delta == -1) return Direction.LEFT;
+        return delta > 0 ? Direction.DOWN : Direction.UP;
+    }
+
+    static int neighbour(int width, int cell, Direction direction) {
+        return cell + direction.dy * width + direction.dx;
+    }
+
+    static Direction direction(byte ordinal) {
+        return DIRECTIONS[ordinal & 3];
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+
+    static int getVarInt(ByteBuffer in) {
+        return (int) getVarLong(in);
+    }
+
+    /**
+     * Growable frame buffer that fills in the length prefix when finished.
+     */
+    private static final class Frame {
+        private byte[] bytes;
+        private int position = 4;
+
+        Frame(byte type, int expectedPayload) {
+            bytes = new byte[5 + expectedPayload];
+            put(type);
+        }
+
+        void put(byte b) {
+            if (position == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[position++] = b;
+        }
+
+        void varInt(int value) {
+            varLong(value & 0xFFFFFFFFL);
+        }
+
+        void varLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        ByteBuffer finish() {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, position);
+            buffer.putInt(0, position - 4);
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+}
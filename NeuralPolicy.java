@@ -0,0 +1,206 @@
+package ta.tugasakhir;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Bot driven by a small neural network: a ReLU hidden layer over a few board features seen
+ * from the head, and three outputs for turning left, going straight or turning right. The
+ * weights are a flat float genome, evolved by {@link EvolutionTrainer}.
+ * <p>
+ * For each of the three moves the features are whether it collides, how far the snake
+ * could go straight on that way, how much room it would have afterwards (a flood fill capped
+ * at twice the snake's length) and how far it brings the head towards the nearest food.
+ * Two more inputs are the distance to that food and the snake's share of the board.
+ * <p>
+ * The policy only reads its genome in place, and its buffers are allocated once, so
+ * {@link #use} can point it at each genome of a population in turn and a decision
+ * allocates nothing.
+ */
+public final class NeuralPolicy implements Policy {
+
+    static final int INPUTS = 14;
+    static final int OUTPUTS = 3;
+    public static final int DEFAULT_HIDDEN = 16;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Direction[] LEFT_OF = new Direction[DIRECTIONS.length];
+    private static final Direction[] RIGHT_OF = new Direction[DIRECTIONS.length];
+
+    static {
+        for (Direction direction : DIRECTIONS) {
+            for (Direction turn : DIRECTIONS) {
+                if (turn.dx == direction.dy && turn.dy == -direction.dx) LEFT_OF[direction.ordinal()] = turn;
+                if (turn.dx == -direction.dy && turn.dy == direction.dx) RIGHT_OF[direction.ordinal()] = turn;
+            }
+        }
+    }
+
+    private final int hidden;
+    private float[] genome;
+    private int offset;
+    private final float[] input = new float[INPUTS];
+    private final float[] activations;
+    private final Direction[] moves = new Direction[OUTPUTS];
+
+    private int[] visited = new int[0];
+    private int[] queue = new int[0];
+    private int generation;
+
+    private final Consumer<Point> nearestFood = this::considerFood;
+    private int headX;
+    private int headY;
+    private int foodX;
+    private int foodY;
+    private int foodDistance;
+
+    public NeuralPolicy(int hidden) {
+        this.hidden = hidden;
+        this.activations = new float[hidden];
+    }
+
+    /**
+     * A policy playing {@code genome}, which it keeps using rather than copying.
+     */
+    public NeuralPolicy(int hidden, float[] genome) {
+        this(hidden);
+        use(genome, 0);
+    }
+
+    /**
+     * Weights per genome: a bias and one weight per input for each hidden unit, then a bias
+     * and one weight per hidden unit for each output.
+     */
+    public static int genomeLength(int hidden) {
+        return hidden * (INPUTS + 1) + OUTPUTS * (hidden + 1);
+    }
+
+    /**
+     * Plays the genome starting at {@code offset} in {@code genomes}, e.g. one slot of a
+     * flat population array.
+     */
+    public void use(float[] genomes, int offset) {
+        if (offset < 0 || offset + genomeLength(hidden) > genomes.length) {
+            throw new IllegalArgumentException("No genome of " + genomeLength(hidden) + " weights at " + offset);
+        }
+        this.genome = genomes;
+        this.offset = offset;
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    @Override
+    public Direction nextDirection(GameEngine game) {
+        Board board = game.getBoard();
+        SnakeBody snake = game.getSnake();
+        int cells = board.width * board.height;
+        if (visited.length < cells) {
+            visited = new int[cells];
+            queue = new int[cells];
+        }
+
+        int head = snake.head();
+        headX = head % board.width;
+        headY = head / board.width;
+        foodDistance = Integer.MAX_VALUE;
+        game.getFoodIndex().forEach(nearestFood);
+        int span = board.width + board.height;
+        int room = Math.min(cells, snake.size() * 2);
+
+        Direction current = game.getCurrentDirection();
+        moves[0] = LEFT_OF[current.ordinal()];
+        moves[1] = current;
+        moves[2] = RIGHT_OF[current.ordinal()];
+        for (int i = 0; i < OUTPUTS; i++) {
+            Direction move = moves[i];
+            int x = headX + move.dx;
+            int y = headY + move.dy;
+            boolean blocked = board.isBlocked(x, y);
+            int run = 0;
+            while (!board.isBlocked(x + move.dx * run, y + move.dy * run)) {
+                run++;
+            }
+            input[i * 4] = blocked ? 1 : 0;
+            input[i * 4 + 1] = (float) run / span;
+            input[i * 4 + 2] = blocked ? 0 : (float) floodFill(board, board.index(x, y), room) / room;
+            input[i * 4 + 3] = foodDistance == Integer.MAX_VALUE ? 0
+                    : (float) ((foodX - headX) * move.dx + (foodY - headY) * move.dy) / span;
+        }
+        input[12] = foodDistance == Integer.MAX_VALUE ? 1 : (float) foodDistance / span;
+        input[13] = (float) snake.size() / cells;
+
+        return moves[decide()];
+    }
+
+    private void considerFood(Point food) {
+        int distance = Math.abs(food.x - headX) + Math.abs(food.y - headY);
+        if (distance < foodDistance) {
+            foodDistance = distance;
+            foodX = food.x;
+            foodY = food.y;
+        }
+    }
+
+    /**
+     * Open cells reachable from {@code start}, counting at most {@code limit}.
+     */
+    private int floodFill(Board board, int start, int limit) {
+        if (++generation == 0) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        visited[start] = generation;
+        while (head < tail && tail < limit) {
+            int cell = queue[head++];
+            int x = cell % board.width;
+            int y = cell / board.width;
+            for (Direction direction : DIRECTIONS) {
+                int nx = x + direction.dx;
+                int ny = y + direction.dy;
+                if (board.isBlocked(nx, ny)) continue;
+                int next = board.index(nx, ny);
+                if (visited[next] != generation) {
+                    visited[next] = generation;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return Math.min(tail, limit);
+    }
+
+    /**
+     * Forward pass.
+     *
+     * @return index of the strongest output
+     */
+    private int decide() {
+        float[] w = genome;
+        int at = offset;
+        for (int h = 0; h < hidden; h++) {
+            float sum = w[at++];
+            for (int i = 0; i < INPUTS; i++) {
+                sum += w[at++] * input[i];
+            }
+            activations[h] = Math.max(0, sum);
+        }
+
+        int best = 0;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for (int o = 0; o < OUTPUTS; o++) {
+            float sum = w[at++];
+            for (int h = 0; h < hidden; h++) {
+                sum += w[at++] * activations[h];
+            }
+            if (sum > bestValue) {
+                bestValue = sum;
+                best = o;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,239 @@
+package ta.tugasakhir;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+
+/**
+ * Draws games into plain ARGB pixel arrays instead of a canvas, so frames can be rendered
+ * without a window, off the FX thread and many at once. The visuals are the {@link SpriteCache}
+ * sprites, which JavaFX paints once; they are composited over both grass colours into opaque
+ * cell-sized tiles, so drawing a frame is nothing but copying tile rows.
+ * <p>
+ * Drawing happens in two steps. {@link #capture} notes which tile each visible cell shows,
+ * a few hundred bytes, and runs on the thread that owns the engine. {@link #render} turns a
+ * captured {@link Frame} into pixels and may be called from any number of threads at once.
+ */
+final class OffscreenRenderer {
+
+    static final int EMPTY = 0;
+    static final int ROCK = 1;
+    static final int FOOD = 2;
+    static final int SPECIAL_FOOD = 3;
+    static final int BODY = 4;
+    static final int TAIL = 5;
+    static final int HEAD = 6;
+    static final int KINDS = HEAD + Direction.values().length;
+
+    /**
+     * Which tile each visible cell shows, row by row.
+     */
+    static final class Frame {
+        final byte[] kinds;
+        /** Parity of the top-left cell; the grass is light where x + y is even. */
+        int parity;
+
+        Frame(int cells) {
+            this.kinds = new byte[cells];
+        }
+    }
+
+    /**
+     * Follows the player's head the way {@link GameRenderer} does: centred on the first
+     * frame, then re-centred only once the head comes close to an edge.
+     */
+    static final class Camera {
+        private int x;
+        private int y;
+        private boolean placed;
+
+        void follow(int focusX, int focusY, int boardWidth, int boardHeight, int columns, int rows) {
+            int marginX = Math.min(GameRenderer.SCROLL_MARGIN, columns / 4);
+            int marginY = Math.min(GameRenderer.SCROLL_MARGIN, rows / 4);
+            if (!placed || focusX - x < marginX || focusX - x >= columns - marginX) {
+                x = clamp(focusX - columns / 2, boardWidth, columns);
+            }
+            if (!placed || focusY - y < marginY || focusY - y >= rows - marginY) {
+                y = clamp(focusY - rows / 2, boardHeight, rows);
+            }
+            placed = true;
+        }
+
+        private static int clamp(int camera, int boardSize, int viewSize) {
+            return Math.max(0, Math.min(camera, boardSize - viewSize));
+        }
+    }
+
+    private static boolean startedToolkit;
+
+    final int cellSize;
+    final int columns;
+    final int rows;
+    /** Frame size in pixels. */
+    final int width;
+    final int height;
+    /** Opaque ARGB tiles, indexed by kind * 2 + grass parity. */
+    final int[][] tiles;
+
+    /**
+     * @param sprites non-premultiplied ARGB sprites indexed like {@link #tiles}; the
+     *                {@link #EMPTY} entries are ignored
+     */
+    OffscreenRenderer(int cellSize, int columns, int rows, int[][] sprites) {
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.width = columns * cellSize;
+        this.height = rows * cellSize;
+        this.tiles = new int[KINDS * 2][];
+
+        for (int kind = 0; kind < KINDS; kind++) {
+            for (int parity = 0; parity < 2; parity++) {
+                int grass = parity == 0 ? GameRenderer.LIGHT_GRASS : GameRenderer.DARK_GRASS;
+                int[] tile = new int[cellSize * cellSize];
+                int[] sprite = kind == EMPTY ? null : sprites[kind * 2 + parity];
+                for (int i = 0; i < tile.length; i++) {
+                    tile[i] = sprite == null ? grass : blend(sprite[i], grass);
+                }
+                tiles[kind * 2 + parity] = tile;
+            }
+        }
+    }
+
+    /**
+     * Paints the sprites with JavaFX and keeps their pixels. The toolkit is started if the
+     * game is not already running it; it opens no window, but does need a display, so run
+     * headless servers under xvfb-run.
+     */
+    static OffscreenRenderer create(int cellSize, int columns, int rows) {
+        synchronized (OffscreenRenderer.class) {
+            if (!startedToolkit) {
+                try {
+                    Platform.startup(() -> { });
+                    startedToolkit = true;
+                } catch (IllegalStateException alreadyStarted) {
+                    // inside the game
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("JavaFX could not start; without a desktop, run under xvfb-run", e);
+                }
+            }
+        }
+
+        SpriteCache cache = new SpriteCache(cellSize);
+        int[][] sprites = new int[KINDS * 2][];
+        for (int parity = 0; parity < 2; parity++) {
+            sprites[ROCK * 2 + parity] = pixels(cache.rock(), cellSize);
+            sprites[FOOD * 2 + parity] = pixels(cache.food(), cellSize);
+            sprites[SPECIAL_FOOD * 2 + parity] = pixels(cache.specialFood(), cellSize);
+            sprites[BODY * 2 + parity] = pixels(cache.body(parity), cellSize);
+            sprites[TAIL * 2 + parity] = pixels(cache.tail(parity), cellSize);
+            for (Direction direction : Direction.values()) {
+                sprites[(HEAD + direction.ordinal()) * 2 + parity] = pixels(cache.head(direction), cellSize);
+            }
+        }
+        return new OffscreenRenderer(cellSize, columns, rows, sprites);
+    }
+
+    /**
+     * Stops the toolkit if {@link #create} started it, so a command-line export can exit.
+     */
+    static synchronized void shutdown() {
+        if (startedToolkit) {
+            startedToolkit = false;
+            Platform.exit();
+        }
+    }
+
+    private static int[] pixels(Image sprite, int cellSize) {
+        int[] argb = new int[cellSize * cellSize];
+        sprite.getPixelReader().getPixels(0, 0, cellSize, cellSize,
+                PixelFormat.getIntArgbInstance(), argb, 0, cellSize);
+        return argb;
+    }
+
+    private static int blend(int argb, int background) {
+        int alpha = argb >>> 24;
+        int result = 0xFF000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int over = (argb >>> shift) & 0xFF;
+            int under = (background >>> shift) & 0xFF;
+            result |= ((over * alpha + under * (255 - alpha) + 127) / 255) << shift;
+        }
+        return result;
+    }
+
+    Frame newFrame() {
+        return new Frame(columns * rows);
+    }
+
+    /**
+     * Records what the engine currently shows through the camera's view.
+     */
+    void capture(GameEngine engine, Camera camera, Frame frame) {
+        Board board = engine.getBoard();
+        if (board.width < columns || board.height < rows) {
+            throw new IllegalArgumentException("Board " + board.width + "x" + board.height
+                    + " is smaller than the " + columns + "x" + rows + " view");
+        }
+        SnakeBody snake = engine.getSnake();
+        int head = snake.head();
+        int tail = snake.tail();
+        camera.follow(head % board.width, head / board.width, board.width, board.height, columns, rows);
+
+        int i = 0;
+        for (int y = camera.y; y < camera.y + rows; y++) {
+            for (int x = camera.x; x < camera.x + columns; x++) {
+                int kind;
+                switch (board.get(x, y)) {
+                    case Board.ROCK: kind = ROCK; break;
+                    case Board.FOOD: kind = FOOD; break;
+                    case Board.SPECIAL_FOOD: kind = SPECIAL_FOOD; break;
+                    case Board.SNAKE: {
+                        int cell = board.index(x, y);
+                        if (cell == head) {
+                            kind = HEAD + engine.getCurrentDirection().ordinal();
+                        } else {
+                            kind = cell == tail ? TAIL : BODY;
+                        }
+                        break;
+                    }
+                    default: kind = EMPTY; break;
+                }
+                frame.kinds[i++] = (byte) kind;
+            }
+        }
+        frame.parity = (camera.x + camera.y) & 1;
+    }
+
+    /**
+     * Draws a frame into {@code pixels}, {@link #width} by {@link #height} ARGB.
+     */
+    void render(Frame frame, int[] pixels) {
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int[] tile = tiles[frame.kinds[row * columns + column] * 2 + ((row + column + frame.parity) & 1)];
+                int at = row * cellSize * width + column * cellSize;
+                for (int y = 0; y < tile.length; y += cellSize) {
+                    System.arraycopy(tile, y, pixels, at, cellSize);
+                    at += width;
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #render(Frame, int[])} for tiles already mapped to palette indexes.
+     */
+    void render(Frame frame, byte[][] indexedTiles, byte[] pixels) {
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                byte[] tile = indexedTiles[frame.kinds[row * columns + column] * 2 + ((row + column + frame.parity) & 1)];
+                int at = row * cellSize * width + column * cellSize;
+                for (int y = 0; y < tile.length; y += cellSize) {
+                    System.arraycopy(tile, y, pixels, at, cellSize);
+                    at += width;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ta.tugasakhir;
+
+class Point {
+    int x, y;
+    boolean special;
+    int points;
+
+    Point(int x, int y) {
+        this.x = x;
+        this.y = y;
+        this.special = false;
+        this.points = 10;
+    }
+
+    Point(int x, int y, boolean special, int points) {
+        this.x = x;
+        this.y = y;
+        this.special = special;
+        this.points = points;
+    }
+}
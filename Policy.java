@@ -0,0 +1,10 @@
+package ta.tugasakhir;
+
+/**
+ * Something that plays the game: asked once per tick which way the snake should go.
+ */
+@FunctionalInterface
+public interface Policy {
+
+    Direction nextDirection(GameEngine game);
+}
@@ -0,0 +1,270 @@
+package ta.tugasakhir;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A client's copy of the server's {@link Arena}, rebuilt from keyframes and advanced by
+ * replaying each delta's log of spawns, moves and placed items. Not thread-safe: frames are
+ * applied on the thread that draws it.
+ */
+final class RemoteGame implements BoardView {
+
+    private static final byte TAIL_MARK = 5;
+
+    final int width;
+    final int height;
+    final int maxPlayers;
+    final int tickMillis;
+
+    private final Board board;
+    private final SnakeBody[] snakes;
+    private final boolean[] alive;
+    private final Direction[] direction;
+    private final int[] score;
+    /**
+     * Per cell: 1-4 for a head (direction ordinal + 1), {@link #TAIL_MARK} for a tail.
+     */
+    private final byte[] marks;
+
+    private int playerId = -1;
+    private long tick = -1;
+    private boolean synced;
+    private int focus;
+
+    RemoteGame(int width, int height, int maxPlayers, int tickMillis) {
+        this.width = width;
+        this.height = height;
+        this.maxPlayers = maxPlayers;
+        this.tickMillis = tickMillis;
+        // every move touches up to four cells; more than that and the renderer redraws anyway
+        this.board = new Board(width, height, 1024);
+        this.snakes = new SnakeBody[maxPlayers];
+        this.alive = new boolean[maxPlayers];
+        this.direction = new Direction[maxPlayers];
+        this.score = new int[maxPlayers];
+        this.marks = new byte[width * height];
+        this.focus = board.index(width / 2, height / 2);
+    }
+
+    /**
+     * Applies one frame's payload, positioned just after the type byte.
+     *
+     * @return false if a delta did not match this state, in which case the client should
+     *         ask for a keyframe; deltas are ignored until one arrives
+     */
+    boolean apply(byte type, ByteBuffer payload) {
+        switch (type) {
+            case NetProtocol.FRAME_JOINED:
+                playerId = NetProtocol.getVarInt(payload);
+                return true;
+            case NetProtocol.FRAME_KEYFRAME:
+                applyKeyframe(payload);
+                return true;
+            case NetProtocol.FRAME_DELTA:
+                if (!synced) return true;
+                if (!applyDelta(payload)) {
+                    synced = false;
+                    return false;
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private void applyKeyframe(ByteBuffer in) {
+        board.clear();
+        Arrays.fill(marks, (byte) 0);
+        Arrays.fill(alive, false);
+        tick = NetProtocol.getVarLong(in);
+
+        int live = NetProtocol.getVarInt(in);
+        for (int i = 0; i < live; i++) {
+            int id = NetProtocol.getVarInt(in);
+            SnakeBody snake = snake(id);
+            snake.clear();
+            score[id] = NetProtocol.getVarInt(in);
+            direction[id] = NetProtocol.direction(in.get());
+            int length = NetProtocol.getVarInt(in);
+            int cell = NetProtocol.getVarInt(in);
+            occupy(snake, cell);
+            for (int j = 1; j < length; j++) {
+                cell = NetProtocol.neighbour(width, cell, NetProtocol.direction(in.get()));
+                occupy(snake, cell);
+            }
+            alive[id] = true;
+            markEnds(id);
+        }
+
+        readItems(in);
+        synced = true;
+        updateFocus();
+    }
+
+    private boolean applyDelta(ByteBuffer in) {
+        long frameTick = NetProtocol.getVarLong(in);
+        if (frameTick != tick + 1) return false;
+        tick = frameTick;
+
+        int spawns = NetProtocol.getVarInt(in);
+        for (int i = 0; i < spawns; i++) {
+            int id = NetProtocol.getVarInt(in);
+            int head = NetProtocol.getVarInt(in);
+            Direction facing = NetProtocol.direction(in.get());
+            if (alive[id]) return false;
+
+            SnakeBody snake = snake(id);
+            snake.clear();
+            for (int j = 0; j < Arena.START_LENGTH; j++) {
+                occupy(snake, head - facing.dx * j);
+            }
+            alive[id] = true;
+            direction[id] = facing;
+            score[id] = 0;
+            markEnds(id);
+        }
+
+        int moves = NetProtocol.getVarInt(in);
+        int id = -1;
+        for (int i = 0; i < moves; i++) {
+            do {
+                id++;
+            } while (id < maxPlayers && !alive[id]);
+            if (id == maxPlayers) return false;
+            move(id, in.get());
+        }
+        if (nextAlive(id) < maxPlayers) return false;
+
+        readItems(in);
+        updateFocus();
+        return true;
+    }
+
+    private int nextAlive(int id) {
+        do {
+            id++;
+        } while (id < maxPlayers && !alive[id]);
+        return id;
+    }
+
+    private void move(int id, byte flags) {
+        SnakeBody snake = snakes[id];
+        int head = snake.head();
+        int tail = snake.tail();
+        direction[id] = NetProtocol.direction(flags);
+
+        if ((flags & Arena.DIED) != 0) {
+            for (int i = 0; i < snake.size(); i++) {
+                int cell = snake.get(i);
+                marks[cell] = 0;
+                board.set(cell % width, cell / width, Board.EMPTY);
+            }
+            snake.clear();
+            alive[id] = false;
+            return;
+        }
+
+        int next = NetProtocol.neighbour(width, head, direction[id]);
+        byte kind = board.get(next % width, next / width);
+        if (kind == Board.SPECIAL_FOOD) {
+            score[id] += Arena.SPECIAL_FOOD_POINTS;
+        } else if (kind == Board.FOOD) {
+            score[id] += Arena.FOOD_POINTS;
+        }
+
+        marks[head] = 0;
+        board.markDirty(head);
+        occupyHead(snake, next);
+        if ((flags & Arena.ATE) == 0) {
+            snake.popTail();
+            marks[tail] = 0;
+            board.set(tail % width, tail / width, Board.EMPTY);
+        }
+        markEnds(id);
+    }
+
+    private void readItems(ByteBuffer in) {
+        int count = NetProtocol.getVarInt(in);
+        int cell = 0;
+        for (int i = 0; i < count; i++) {
+            cell += NetProtocol.getVarInt(in);
+            board.set(cell % width, cell / width, in.get());
+        }
+    }
+
+    private SnakeBody snake(int id) {
+        if (snakes[id] == null) {
+            snakes[id] = new SnakeBody();
+        }
+        return snakes[id];
+    }
+
+    private void occupy(SnakeBody snake, int cell) {
+        snake.addTail(cell);
+        board.set(cell % width, cell / width, Board.SNAKE);
+    }
+
+    private void occupyHead(SnakeBody snake, int cell) {
+        snake.pushHead(cell);
+        board.set(cell % width, cell / width, Board.SNAKE);
+    }
+
+    private void markEnds(int id) {
+        SnakeBody snake = snakes[id];
+        marks[snake.head()] = (byte) (direction[id].ordinal() + 1);
+        marks[snake.tail()] = TAIL_MARK;
+        board.markDirty(snake.tail());
+    }
+
+    private void updateFocus() {
+        if (playerId >= 0 && alive[playerId]) {
+            focus = snakes[playerId].head();
+        }
+    }
+
+    @Override
+    public Board getBoard() {
+        return board;
+    }
+
+    @Override
+    public int getFocusCell() {
+        return focus;
+    }
+
+    @Override
+    public Direction getHeadDirection(int cell) {
+        byte mark = marks[cell];
+        return mark > 0 && mark < TAIL_MARK ? NetProtocol.direction((byte) (mark - 1)) : null;
+    }
+
+    @Override
+    public boolean isTail(int cell) {
+        return marks[cell] == TAIL_MARK;
+    }
+
+    boolean isSynced() {
+        return synced;
+    }
+
+    long getTick() {
+        return tick;
+    }
+
+    int getPlayerId() {
+        return playerId;
+    }
+
+    boolean isAlive(int id) {
+        return id >= 0 && alive[id];
+    }
+
+    int getScore(int id) {
+        return score[id];
+    }
+
+    SnakeBody getSnake(int id) {
+        return snakes[id];
+    }
+}
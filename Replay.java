@@ -0,0 +1,152 @@
+package ta.tugasakhir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Recorded game: the board size and seed, plus every input that affected the run, keyed by
+ * the engine tick it was applied on.
+ * <p>
+ * Binary layout (big-endian): magic {@code "SNKR"}, version byte, width, height, seed, rock
+ * cap, then one record per event - a varint tick delta followed by an op byte. Ops 0-3 are a
+ * {@link Direction} ordinal, the others are {@link #OP_ROCK} and {@link #OP_END}.
+ * <p>
+ * Since version 2 the engine schedules rocks itself, so {@link #OP_ROCK} only marks extra
+ * spawns requested from outside the engine. Version 3 added the rock cap; version 2 files
+ * are read with {@link GameEngine#MAX_ROCKS}.
+ */
+public final class Replay {
+
+    static final int MAGIC = 0x534E4B52;
+    static final byte VERSION = 3;
+
+    static final byte OP_ROCK = 4;
+    static final byte OP_END = 5;
+
+    final int width;
+    final int height;
+    final long seed;
+    final int maxRocks;
+
+    private long[] ticks = new long[64];
+    private byte[] ops = new byte[64];
+    private int size;
+
+    Replay(int width, int height, long seed, int maxRocks) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.maxRocks = maxRocks;
+    }
+
+    void add(long tick, byte op) {
+        if (size == ops.length) {
+            ticks = Arrays.copyOf(ticks, size * 2);
+            ops = Arrays.copyOf(ops, size * 2);
+        }
+        ticks[size] = tick;
+        ops[size] = op;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long tickAt(int i) {
+        return ticks[i];
+    }
+
+    byte opAt(int i) {
+        return ops[i];
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeLong(seed);
+        data.writeInt(maxRocks);
+
+        long last = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarLong(data, ticks[i] - last);
+            data.writeByte(ops[i]);
+            last = ticks[i];
+        }
+        data.flush();
+    }
+
+    public static Replay read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        byte version = data.readByte();
+        if (version != VERSION && version != 2) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+
+        int width = data.readInt();
+        int height = data.readInt();
+        long seed = data.readLong();
+        int maxRocks = version == 2 ? GameEngine.MAX_ROCKS : data.readInt();
+        Replay replay = new Replay(width, height, seed, maxRocks);
+        long tick = 0;
+        while (true) {
+            int first = data.read();
+            if (first < 0) break;
+            tick += readVarLong(data, first);
+            replay.add(tick, data.readByte());
+        }
+        return replay;
+    }
+
+    public void save(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    public static Replay load(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = in.read();
+            if (b < 0) throw new EOFException();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
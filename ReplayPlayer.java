@@ -0,0 +1,79 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Re-simulates a {@link Replay} on a fresh engine. Each {@link #step()} applies the events
+ * recorded for the current tick and then ticks, so it can be driven by the UI game loop or
+ * run flat out headless.
+ */
+public final class ReplayPlayer {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Replay replay;
+    private final GameEngine engine;
+    private int next = 0;
+    private boolean finished = false;
+
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        this.engine = new GameEngine(replay.width, replay.height, replay.seed, replay.maxRocks);
+    }
+
+    /**
+     * @return false once the replay has ended, either by the snake dying or by reaching
+     *         the recorded end marker
+     */
+    public boolean step() {
+        if (finished) return false;
+
+        long now = engine.getTicks();
+        while (next < replay.size() && replay.tickAt(next) == now) {
+            byte op = replay.opAt(next++);
+            if (op == Replay.OP_END) {
+                finished = true;
+                return false;
+            } else if (op == Replay.OP_ROCK) {
+                engine.spawnRock();
+            } else {
+                engine.steer(DIRECTIONS[op]);
+            }
+        }
+
+        if (!engine.tick()) {
+            finished = true;
+        }
+        return !finished;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ReplayPlayer <replay-file>");
+            System.exit(2);
+        }
+
+        Replay replay = Replay.load(Paths.get(args[0]));
+        ReplayPlayer player = new ReplayPlayer(replay);
+
+        long start = System.nanoTime();
+        while (player.step()) {
+            // run to the end as fast as possible
+        }
+        long elapsed = System.nanoTime() - start;
+
+        GameEngine engine = player.getEngine();
+        System.out.printf("seed=%d ticks=%d score=%d length=%d (%.0f ticks/s)%n",
+                replay.seed, engine.getTicks(), engine.getScore(), engine.getSnake().size(),
+                engine.getTicks() * 1e9 / Math.max(1, elapsed));
+    }
+}
@@ -0,0 +1,38 @@
+package ta.tugasakhir;
+
+/**
+ * Drives a {@link GameEngine} while writing every input that changes the run into a
+ * {@link Replay}. Ticks and rock spawns must go through the recorder, not the engine.
+ */
+public final class ReplayRecorder {
+
+    private final GameEngine engine;
+    private final Replay replay;
+
+    public ReplayRecorder(GameEngine engine) {
+        this.engine = engine;
+        this.replay = new Replay(engine.getWidth(), engine.getHeight(), engine.getSeed(),
+                engine.getMaxRocks());
+    }
+
+    public boolean tick() {
+        if (engine.getNextDirection() != engine.getCurrentDirection()) {
+            replay.add(engine.getTicks(), (byte) engine.getNextDirection().ordinal());
+        }
+        return engine.tick();
+    }
+
+    /**
+     * Records an extra rock spawn on top of the ones the engine schedules itself. Spawns
+     * consume random numbers whether or not a rock is placed, so every attempt is recorded.
+     */
+    public boolean spawnRock() {
+        replay.add(engine.getTicks(), Replay.OP_ROCK);
+        return engine.spawnRock();
+    }
+
+    public Replay finish() {
+        replay.add(engine.getTicks(), Replay.OP_END);
+        return replay;
+    }
+}
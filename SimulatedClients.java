@@ -0,0 +1,198 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Load generator for {@link GameServer}: many simulated players on one selector thread,
+ * each joining, steering at random and respawning after it dies. The first few clients also
+ * decode every frame into a {@link RemoteGame}, so protocol errors show up as resyncs.
+ * <p>
+ * Without {@code --port} it starts a server in the same process on a loopback port.
+ */
+public final class SimulatedClients {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int RESPAWN_EVERY_FRAMES = 20;
+
+    private static final class Client {
+        final SocketChannel channel;
+        ByteBuffer input = ByteBuffer.allocate(1 << 16);
+        final ByteBuffer output = ByteBuffer.allocate(64);
+        RemoteGame game;
+        final boolean decode;
+        long frames;
+
+        Client(SocketChannel channel, boolean decode) {
+            this.channel = channel;
+            this.decode = decode;
+        }
+    }
+
+    private final Selector selector;
+    private final GameRandom random;
+    private long framesReceived;
+    private long bytesReceived;
+    private long resyncs;
+    private int connected;
+
+    private SimulatedClients(long seed) throws IOException {
+        this.selector = Selector.open();
+        this.random = new GameRandom(seed);
+    }
+
+    private void connect(InetSocketAddress address, int count, int decoding) throws IOException {
+        for (int i = 0; i < count; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.connect(address);
+            channel.register(selector, SelectionKey.OP_CONNECT, new Client(channel, i < decoding));
+        }
+    }
+
+    private void run(long durationNanos) throws IOException {
+        long end = System.nanoTime() + durationNanos;
+        while (System.nanoTime() < end) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Client client = (Client) key.attachment();
+                try {
+                    if (key.isConnectable() && client.channel.finishConnect()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                        connected++;
+                        send(client, NetProtocol.OP_JOIN, 0);
+                    } else if (key.isReadable()) {
+                        read(client);
+                    }
+                } catch (IOException e) {
+                    key.cancel();
+                    client.channel.close();
+                }
+            }
+        }
+    }
+
+    private void read(Client client) throws IOException {
+        int n = client.channel.read(client.input);
+        if (n < 0) throw new IOException("Server closed the connection");
+        bytesReceived += n;
+
+        ByteBuffer input = client.input;
+        input.flip();
+        while (input.remaining() >= 4) {
+            int length = input.getInt(input.position());
+            if (input.remaining() < 4 + length) {
+                if (4 + length > input.capacity()) {
+                    ByteBuffer grown = ByteBuffer.allocate(Integer.highestOneBit(4 + length) * 2);
+                    grown.put(input);
+                    client.input = grown;
+                    return;
+                }
+                break;
+            }
+            int next = input.position() + 4 + length;
+            input.position(input.position() + 4);
+            handleFrame(client, input.slice().limit(length));
+            input.position(next);
+        }
+        input.compact();
+    }
+
+    private void handleFrame(Client client, ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        framesReceived++;
+        client.frames++;
+
+        if (client.decode) {
+            if (type == NetProtocol.FRAME_WELCOME) {
+                client.game = new RemoteGame(NetProtocol.getVarInt(frame), NetProtocol.getVarInt(frame),
+                        NetProtocol.getVarInt(frame), NetProtocol.getVarInt(frame));
+            } else if (client.game != null && !client.game.apply(type, frame)) {
+                resyncs++;
+                send(client, NetProtocol.OP_RESYNC, 0);
+            }
+        }
+
+        if (type == NetProtocol.FRAME_DELTA) {
+            if (random.nextInt(5) == 0) {
+                send(client, NetProtocol.OP_STEER, random.nextInt(DIRECTIONS.length));
+            }
+            if (client.frames % RESPAWN_EVERY_FRAMES == 0) {
+                send(client, NetProtocol.OP_JOIN, 0);
+            }
+        }
+    }
+
+    private void send(Client client, byte op, int argument) throws IOException {
+        ByteBuffer output = client.output;
+        output.clear();
+        output.put(op).put((byte) argument).flip();
+        // two bytes always fit in an empty socket buffer; a full one means the server stalled
+        client.channel.write(output);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: SimulatedClients [--host=H] [--port=P] [--clients=N] [--seconds=S] "
+                        + "[--decode=N] [--width=W] [--height=H] [--tick-ms=T]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        int clients = Integer.parseInt(options.getOrDefault("clients", "1000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int decoding = Integer.parseInt(options.getOrDefault("decode", "4"));
+
+        GameServer server = null;
+        Thread serverThread = null;
+        InetSocketAddress address;
+        if (options.containsKey("port")) {
+            address = new InetSocketAddress(options.getOrDefault("host", "localhost"),
+                    Integer.parseInt(options.get("port")));
+        } else {
+            int width = Integer.parseInt(options.getOrDefault("width", "256"));
+            int height = Integer.parseInt(options.getOrDefault("height", "256"));
+            int tickMillis = Integer.parseInt(options.getOrDefault("tick-ms", "100"));
+            Arena arena = new Arena(width, height, clients, width * height / 64,
+                    GameEngine.ROCK_SPAWN_INTERVAL / tickMillis, 1);
+            server = new GameServer(arena, new InetSocketAddress("127.0.0.1", 0), tickMillis);
+            serverThread = new Thread(server, "game-server");
+            serverThread.start();
+            address = new InetSocketAddress("127.0.0.1", server.getPort());
+        }
+
+        SimulatedClients simulation = new SimulatedClients(42);
+        simulation.connect(address, clients, decoding);
+        long start = System.nanoTime();
+        simulation.run(seconds * 1_000_000_000L);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("clients=%d connected=%d elapsed=%.1fs%n", clients, simulation.connected, elapsed);
+        System.out.printf("received: %d frames (%.0f/s), %.1f MB (%.2f MB/s)%n",
+                simulation.framesReceived, simulation.framesReceived / elapsed,
+                simulation.bytesReceived / 1e6, simulation.bytesReceived / 1e6 / elapsed);
+        System.out.printf("decoding clients=%d resyncs=%d%n", Math.min(decoding, clients), simulation.resyncs);
+
+        if (server != null) {
+            server.close();
+            serverThread.join();
+            System.out.printf("server: ticks=%d live snakes=%d keyframes=%d%n",
+                    server.getArena().getTicks(), server.getArena().getLiveCount(), server.getKeyframesSent());
+        }
+    }
+}
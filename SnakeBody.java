@@ -0,0 +1,101 @@
+package ta.tugasakhir;
+
+import java.nio.IntBuffer;
+
+/**
+ * Snake body as a circular buffer of packed cell indices (y * width + x), head first.
+ * Pushing a head, popping the tail and indexed access are O(1) and allocation-free;
+ * the backing array only grows (doubling) when the snake outgrows it.
+ */
+final class SnakeBody {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] cells = new int[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int head = 0;
+    private int size = 0;
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Cell of the i-th segment, where 0 is the head and size() - 1 the tail.
+     */
+    int get(int i) {
+        return cells[(head + i) & mask];
+    }
+
+    int head() {
+        return cells[head];
+    }
+
+    int tail() {
+        return cells[(head + size - 1) & mask];
+    }
+
+    void pushHead(int cell) {
+        if (size == cells.length) {
+            grow();
+        }
+        head = (head - 1) & mask;
+        cells[head] = cell;
+        size++;
+    }
+
+    /**
+     * Appends a segment behind the current tail. Used when building the initial body.
+     */
+    void addTail(int cell) {
+        if (size == cells.length) {
+            grow();
+        }
+        cells[(head + size) & mask] = cell;
+        size++;
+    }
+
+    int popTail() {
+        int cell = cells[(head + size - 1) & mask];
+        size--;
+        return cell;
+    }
+
+    /**
+     * Bulk-copies the cells, head first: at most two array copies however long the snake is.
+     */
+    void writeTo(IntBuffer out) {
+        int first = Math.min(size, cells.length - head);
+        out.put(cells, head, first);
+        out.put(cells, 0, size - first);
+    }
+
+    /**
+     * Replaces the body with {@code length} cells read head first.
+     */
+    void readFrom(IntBuffer in, int length) {
+        if (length > cells.length) {
+            int capacity = Integer.highestOneBit(length - 1) << 1;
+            cells = new int[capacity];
+            mask = capacity - 1;
+        }
+        in.get(cells, 0, length);
+        head = 0;
+        size = length;
+    }
+
+    private void grow() {
+        int[] grown = new int[cells.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = cells[(head + i) & mask];
+        }
+        cells = grown;
+        mask = grown.length - 1;
+        head = 0;
+    }
+}
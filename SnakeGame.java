@@ -1,13 +1,12 @@
 package ta.tugasakhir;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.effect.DropShadow;
@@ -15,29 +14,43 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.LinearGradient;
-import javafx.scene.paint.RadialGradient;
-import javafx.scene.paint.Stop;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
-import javafx.util.Duration;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.management.JMException;
 
 public class SnakeGame extends Application {
 
-    private static final int CELL_SIZE = 28;
-    private static final int GAME_WIDTH = 20;
-    private static final int GAME_HEIGHT = 15;
+    private static final int DEFAULT_CELL_SIZE = 28;
+    private static final int DEFAULT_WIDTH = 20;
+    private static final int DEFAULT_HEIGHT = 15;
+    private static final int MIN_BOARD_SIZE = 8;
+    private static final int MAX_BOARD_SIZE = 4096;
+    private static final int VIEW_WIDTH = DEFAULT_WIDTH * DEFAULT_CELL_SIZE;
+    private static final int VIEW_HEIGHT = DEFAULT_HEIGHT * DEFAULT_CELL_SIZE;
     private static final int WINDOW_WIDTH = 900;
     private static final int WINDOW_HEIGHT = 650;
-    private static final int INITIAL_SPEED = 150;
-    private static final int ROCK_SPAWN_INTERVAL = 10;
+    private static final int MAX_TICKS_PER_FRAME = 5;
+    private static final int LEADERBOARD_SIZE = 5;
+    private static final long METRICS_OVERLAY_NANOS = 250_000_000L;
+
+    private int cellSize = DEFAULT_CELL_SIZE;
+    private int boardWidth = DEFAULT_WIDTH;
+    private int boardHeight = DEFAULT_HEIGHT;
+    private int maxRocks = GameEngine.MAX_ROCKS;
 
     private Canvas gameCanvas;
-    private GraphicsContext gc;
+    private GameRenderer renderer;
     private Label scoreLabel;
     private Label highScoreLabel;
     private Button pauseButton;
@@ -47,51 +60,119 @@ public class SnakeGame extends Application {
     private VBox statsPanel;
     private BorderPane root;
 
-    private LinkedList<Point> snake = new LinkedList<>();
-    private List<Point> foods = new ArrayList<>();
-    private List<Point> rocks = new ArrayList<>();
-    private Direction currentDirection = Direction.RIGHT;
-    private Direction nextDirection = Direction.RIGHT;
-    private boolean gameRunning = false;
+    private GameEngine engine;
     private boolean gamePaused = false;
-    private boolean gameOver = false;
-    private int score = 0;
     private int highScore = 0;
-    private int speed = INITIAL_SPEED;
-    private int foodsEaten = 0;
-    private Timeline gameLoop;
-    private Timeline rockSpawnTimer;
-    private Random random = new Random();
-
-    private enum Direction {
-        UP, DOWN, LEFT, RIGHT
-    }
-
-    private static class Point {
-        int x, y;
-        Color color;
-        boolean special;
-        int points;
+    private AnimationTimer gameLoop;
+    private long lastFrameNanos;
+    private double accumulatedMillis;
+    private boolean interpolate;
+
+    private Long seed;
+    private Path recordDir;
+    private ReplayRecorder recorder;
+    private Replay replay;
+    private ReplayPlayer player;
+    private final Autopilot autopilot = new Autopilot();
+    private final InputQueue input = new InputQueue();
+    private boolean autopilotEnabled;
+    private GameClient client;
+    private boolean clientWasAlive;
+    private Path snapshotFile = Paths.get("snake.snapshot");
+    private boolean resuming;
+    private FileChannel streamChannel;
+    private SnapshotWriter stream;
+    private TelemetryLog telemetryLog;
+    private TelemetryRecorder telemetry;
+    private Path leaderboardFile = Paths.get(System.getProperty("user.home"), ".snake-leaderboard");
+    private Label[] leaderboardRows;
+    /**
+     * Loading and writing the leaderboard happens on this thread, never the FX thread.
+     */
+    private final ExecutorService leaderboardThread = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "leaderboard");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Leaderboard leaderboard;
+    /**
+     * Null while instrumentation is off, so the game loop skips even the clock reads.
+     */
+    private Metrics metrics;
+    private Path metricsDump;
+    private Label metricsLabel;
+    private long lastOverlayNanos;
 
-        Point(int x, int y) {
-            this.x = x;
-            this.y = y;
-            this.color = Color.RED;
-            this.special = false;
-            this.points = 10;
+    @Override
+    public void start(Stage primaryStage) throws IOException {
+        Map<String, String> options = getParameters().getNamed();
+        if (options.containsKey("seed")) {
+            seed = Long.parseLong(options.get("seed"));
         }
-
-        Point(int x, int y, Color color, boolean special, int points) {
-            this.x = x;
-            this.y = y;
-            this.color = color;
-            this.special = special;
-            this.points = points;
+        if (options.containsKey("record")) {
+            recordDir = Paths.get(options.get("record"));
+        }
+        if (options.containsKey("cell-size")) {
+            cellSize = Integer.parseInt(options.get("cell-size"));
+        }
+        if (options.containsKey("width")) {
+            boardWidth = Integer.parseInt(options.get("width"));
+        }
+        if (options.containsKey("height")) {
+            boardHeight = Integer.parseInt(options.get("height"));
+        }
+        if (options.containsKey("max-rocks")) {
+            maxRocks = Integer.parseInt(options.get("max-rocks"));
+        }
+        if (options.containsKey("replay")) {
+            replay = Replay.load(Paths.get(options.get("replay")));
+            boardWidth = replay.width;
+            boardHeight = replay.height;
+        }
+        if (options.containsKey("save")) {
+            snapshotFile = Paths.get(options.get("save"));
+        }
+        if (options.containsKey("resume")) {
+            engine = Snapshot.load(Paths.get(options.get("resume")));
+            boardWidth = engine.getWidth();
+            boardHeight = engine.getHeight();
+            resuming = true;
+        }
+        if (options.containsKey("stream")) {
+            if (recordDir != null) {
+                throw new IllegalArgumentException("--record and --stream cannot be used together");
+            }
+            streamChannel = FileChannel.open(Paths.get(options.get("stream")), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        if (options.containsKey("leaderboard")) {
+            leaderboardFile = Paths.get(options.get("leaderboard"));
+        }
+        if (options.containsKey("telemetry")) {
+            telemetryLog = TelemetryLog.create(Paths.get(options.get("telemetry")));
+        }
+        if (options.containsKey("connect")) {
+            String address = options.get("connect");
+            int colon = address.lastIndexOf(':');
+            client = GameClient.connect(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+            boardWidth = client.getGame().width;
+            boardHeight = client.getGame().height;
+        }
+        if (boardWidth < MIN_BOARD_SIZE || boardWidth > MAX_BOARD_SIZE
+                || boardHeight < MIN_BOARD_SIZE || boardHeight > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Board must be between " + MIN_BOARD_SIZE + " and "
+                    + MAX_BOARD_SIZE + " cells on each side, got " + boardWidth + "x" + boardHeight);
+        }
+        if (cellSize < 8 || cellSize > VIEW_HEIGHT / MIN_BOARD_SIZE) {
+            throw new IllegalArgumentException("Cell size must be between 8 and "
+                    + VIEW_HEIGHT / MIN_BOARD_SIZE + " pixels, got " + cellSize);
+        }
+        interpolate = Boolean.parseBoolean(options.get("interpolate"));
+        autopilotEnabled = Boolean.parseBoolean(options.get("autopilot"));
+        if (options.containsKey("metrics-dump")) {
+            metricsDump = Paths.get(options.get("metrics-dump"));
         }
-    }
 
-    @Override
-    public void start(Stage primaryStage) {
         root = new BorderPane();
         root.getStyleClass().add("root");
 
@@ -112,14 +193,21 @@ public class SnakeGame extends Application {
         primaryStage.setResizable(false);
         primaryStage.initStyle(StageStyle.UNDECORATED);
         primaryStage.show();
+        openLeaderboard();
+        if (Boolean.parseBoolean(options.get("metrics")) || metricsDump != null) {
+            toggleMetrics();
+        }
 
-        setupGame();
-        startGame();
-        startRockSpawner();
+        if (client != null) {
+            startClient();
+        } else {
+            setupGame();
+            startGame();
+        }
     }
 
     private void handleKeyPress(KeyCode code) {
-        if (gameOver) {
+        if (client != null ? !client.isAlive() : engine.isGameOver()) {
             if (code == KeyCode.R || code == KeyCode.SPACE || code == KeyCode.ENTER) {
                 resetGame();
             }
@@ -129,19 +217,19 @@ public class SnakeGame extends Application {
         switch (code) {
             case UP:
             case W:
-                if (currentDirection != Direction.DOWN) nextDirection = Direction.UP;
+                steer(Direction.UP);
                 break;
             case DOWN:
             case S:
-                if (currentDirection != Direction.UP) nextDirection = Direction.DOWN;
+                steer(Direction.DOWN);
                 break;
             case LEFT:
             case A:
-                if (currentDirection != Direction.RIGHT) nextDirection = Direction.LEFT;
+                steer(Direction.LEFT);
                 break;
             case RIGHT:
             case D:
-                if (currentDirection != Direction.LEFT) nextDirection = Direction.RIGHT;
+                steer(Direction.RIGHT);
                 break;
             case SPACE:
                 togglePause();
@@ -149,12 +237,32 @@ public class SnakeGame extends Application {
             case R:
                 resetGame();
                 break;
+            case B:
+                autopilotEnabled = !autopilotEnabled;
+                break;
+            case M:
+                toggleMetrics();
+                break;
+            case F5:
+                saveSnapshot();
+                break;
+            case F9:
+                loadSnapshot();
+                break;
             case ESCAPE:
-                System.exit(0);
+                exit();
                 break;
         }
     }
 
+    private void steer(Direction direction) {
+        if (client != null) {
+            client.steer(direction);
+        } else if (player == null) {
+            input.offer(direction, System.nanoTime());
+        }
+    }
+
     private void setupHeader() {
         HBox header = new HBox();
         header.getStyleClass().add("header");
@@ -182,7 +290,7 @@ public class SnakeGame extends Application {
 
         exitButton = new Button("EXIT");
         exitButton.getStyleClass().add("control-button");
-        exitButton.setOnAction(e -> System.exit(0));
+        exitButton.setOnAction(e -> exit());
 
         rightSection.getChildren().addAll(pauseButton, restartButton, exitButton);
 
@@ -195,19 +303,23 @@ public class SnakeGame extends Application {
         gameAreaContainer.getStyleClass().add("game-container");
         gameAreaContainer.setPadding(new Insets(10));
 
-        Rectangle border = new Rectangle(GAME_WIDTH * CELL_SIZE + 4, GAME_HEIGHT * CELL_SIZE + 4);
+        // boards larger than the view are scrolled by the renderer
+        int viewWidth = Math.min(boardWidth, VIEW_WIDTH / cellSize) * cellSize;
+        int viewHeight = Math.min(boardHeight, VIEW_HEIGHT / cellSize) * cellSize;
+
+        Rectangle border = new Rectangle(viewWidth + 4, viewHeight + 4);
         border.setFill(Color.TRANSPARENT);
         border.setStroke(LinearGradient.valueOf("linear-gradient(from 0% 0% to 100% 100%, #34a853 0%, #4285f4 50%, #ea4335 100%)"));
         border.setStrokeWidth(4);
         border.setArcWidth(15);
         border.setArcHeight(15);
 
-        gameCanvas = new Canvas(GAME_WIDTH * CELL_SIZE, GAME_HEIGHT * CELL_SIZE);
-        gc = gameCanvas.getGraphicsContext2D();
+        gameCanvas = new Canvas(viewWidth, viewHeight);
+        renderer = new GameRenderer(gameCanvas, cellSize);
 
         gameOverPane = new StackPane();
         gameOverPane.setVisible(false);
-        gameOverPane.setPrefSize(GAME_WIDTH * CELL_SIZE, GAME_HEIGHT * CELL_SIZE);
+        gameOverPane.setPrefSize(viewWidth, viewHeight);
         gameOverPane.getStyleClass().add("game-over-pane");
 
         VBox gameOverContent = new VBox(15);
@@ -257,6 +369,17 @@ public class SnakeGame extends Application {
         highScoreLabel = new Label("HIGH SCORE: 0");
         highScoreLabel.getStyleClass().add("stat-label");
 
+        VBox leaderboardBox = new VBox(2);
+        Label leaderboardTitle = new Label("TOP SCORES");
+        leaderboardTitle.getStyleClass().add("controls-title");
+        leaderboardBox.getChildren().add(leaderboardTitle);
+        leaderboardRows = new Label[LEADERBOARD_SIZE];
+        for (int i = 0; i < LEADERBOARD_SIZE; i++) {
+            leaderboardRows[i] = new Label((i + 1) + ". -");
+            leaderboardRows[i].getStyleClass().add("control-item");
+            leaderboardBox.getChildren().add(leaderboardRows[i]);
+        }
+
         VBox controlsBox = new VBox(8);
         controlsBox.getStyleClass().add("controls-box");
         controlsBox.setPadding(new Insets(15, 0, 0, 0));
@@ -282,13 +405,27 @@ public class SnakeGame extends Application {
         Label restartControl = new Label("R     - RESTART");
         restartControl.getStyleClass().add("control-item");
 
+        Label autopilotControl = new Label("B     - AUTOPILOT");
+        autopilotControl.getStyleClass().add("control-item");
+
+        Label metricsControl = new Label("M     - METRICS");
+        metricsControl.getStyleClass().add("control-item");
+
+        Label saveControl = new Label("F5 F9 - SAVE/LOAD");
+        saveControl.getStyleClass().add("control-item");
+
         Label exitControl = new Label("ESC   - EXIT GAME");
         exitControl.getStyleClass().add("control-item");
 
         controlsBox.getChildren().addAll(controlsTitle, upControl, downControl, leftControl, rightControl,
-                pauseControl, restartControl, exitControl);
+                pauseControl, restartControl, autopilotControl, metricsControl, saveControl, exitControl);
 
-        statsPanel.getChildren().addAll(statsTitle, scoreLabel, highScoreLabel, controlsBox);
+        metricsLabel = new Label();
+        metricsLabel.getStyleClass().add("control-item");
+        metricsLabel.setVisible(false);
+        metricsLabel.setManaged(false);
+
+        statsPanel.getChildren().addAll(statsTitle, scoreLabel, highScoreLabel, metricsLabel, leaderboardBox, controlsBox);
 
         HBox center = (HBox) root.getCenter();
         center.getChildren().add(statsPanel);
@@ -307,558 +444,404 @@ public class SnakeGame extends Application {
     }
 
     private void setupGame() {
-        snake.clear();
-        foods.clear();
-        rocks.clear();
-
-        for (int i = 0; i < 3; i++) {
-            snake.add(new Point(5 - i, 7));
+        if (replay != null) {
+            player = new ReplayPlayer(replay);
+            engine = player.getEngine();
+        } else if (engine == null) {
+            engine = new GameEngine(boardWidth, boardHeight,
+                    seed != null ? seed : System.nanoTime(), maxRocks);
+        } else if (!resuming) {
+            engine.reset();
         }
 
-        spawnInitialRocks();
-        spawnFood();
-        spawnSpecialFood();
+        // a replay only describes games played from a fresh seed
+        if (recordDir != null && !resuming) {
+            recorder = new ReplayRecorder(engine);
+        }
+        if (streamChannel != null && (stream == null || stream.getEngine() != engine)) {
+            stream = new SnapshotWriter(engine, streamChannel, SnapshotWriter.DEFAULT_KEYFRAME_INTERVAL);
+        }
+        if (telemetryLog != null && player == null
+                && (telemetry == null || telemetry.getEngine() != engine)) {
+            telemetry = new TelemetryRecorder(telemetryLog, engine);
+        }
+        resuming = false;
 
-        gameRunning = true;
-        gameOver = false;
         gamePaused = false;
-        score = 0;
-        speed = INITIAL_SPEED;
-        foodsEaten = 0;
-        currentDirection = Direction.RIGHT;
-        nextDirection = Direction.RIGHT;
+        input.clear();
+        engine.setMetrics(metrics);
 
         updateStats();
         drawGame();
     }
 
-    private void spawnInitialRocks() {
-        for (int i = 0; i < 5; i++) {
-            spawnRock();
+    /**
+     * Runs the game on a single AnimationTimer with a fixed-timestep accumulator: elapsed
+     * frame time is banked and spent in whole ticks of the engine's current speed, and the
+     * board is drawn once per display frame. A speed change just alters the tick length, so
+     * nothing is rebuilt, and rock spawns happen inside the engine on simulation time.
+     */
+    private void startGame() {
+        lastFrameNanos = 0;
+        accumulatedMillis = 0;
+
+        if (gameLoop == null) {
+            gameLoop = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    runFrame(now);
+                }
+            };
         }
+        gameLoop.start();
     }
 
-    private void startGame() {
-        if (gameLoop != null) {
-            gameLoop.stop();
+    private void runFrame(long now) {
+        if (lastFrameNanos == 0) {
+            lastFrameNanos = now;
         }
+        double frameMillis = (now - lastFrameNanos) / 1_000_000.0;
+        lastFrameNanos = now;
 
-        gameLoop = new Timeline(new KeyFrame(Duration.millis(speed), e -> {
-            if (!gamePaused && !gameOver) {
-                updateGame();
-            }
-        }));
-        gameLoop.setCycleCount(Timeline.INDEFINITE);
-        gameLoop.play();
-    }
+        if (metrics != null && now - lastOverlayNanos >= METRICS_OVERLAY_NANOS) {
+            lastOverlayNanos = now;
+            metricsLabel.setText(metrics.describe());
+        }
 
-    private void startRockSpawner() {
-        if (rockSpawnTimer != null) {
-            rockSpawnTimer.stop();
+        if (gamePaused || engine.isGameOver()) {
+            return;
         }
 
-        rockSpawnTimer = new Timeline(new KeyFrame(Duration.seconds(ROCK_SPAWN_INTERVAL), e -> {
-            if (!gamePaused && !gameOver && gameRunning) {
-                spawnRock();
-                drawGame();
+        accumulatedMillis += frameMillis;
+        int ticks = 0;
+        while (accumulatedMillis >= engine.getSpeed() && ticks < MAX_TICKS_PER_FRAME) {
+            accumulatedMillis -= engine.getSpeed();
+            ticks++;
+            if (!updateGame()) {
+                return;
             }
-        }));
-        rockSpawnTimer.setCycleCount(Timeline.INDEFINITE);
-        rockSpawnTimer.play();
-    }
-
-    private void updateGame() {
-        if (!gameRunning || gamePaused || gameOver) return;
-
-        currentDirection = nextDirection;
-        Point head = snake.getFirst();
-        Point newHead = new Point(head.x, head.y);
+        }
+        if (ticks == MAX_TICKS_PER_FRAME) {
+            // drop the backlog after a long stall instead of fast-forwarding through it
+            accumulatedMillis = 0;
+        }
 
-        switch (currentDirection) {
-            case UP: newHead.y--; break;
-            case DOWN: newHead.y++; break;
-            case LEFT: newHead.x--; break;
-            case RIGHT: newHead.x++; break;
+        if (ticks > 0) {
+            flushStream();
         }
 
-        if (checkCollision(newHead)) {
-            gameOver();
+        long renderStart = metrics != null ? System.nanoTime() : 0;
+        if (interpolate) {
+            renderer.drawInterpolated(engine, accumulatedMillis / engine.getSpeed());
+        } else if (ticks > 0) {
+            drawChanges();
+        } else {
             return;
         }
-
-        snake.addFirst(newHead);
-
-        boolean ateFood = false;
-        Point foodToRemove = null;
-
-        for (Point food : foods) {
-            if (newHead.x == food.x && newHead.y == food.y) {
-                score += food.points;
-                foodsEaten++;
-                ateFood = true;
-                foodToRemove = food;
-
-                if (food.special) {
-                    score += 50;
-                    spawnSpecialFood();
-                } else {
-                    if (foods.size() < 3) {
-                        spawnFood();
-                    }
-                }
-                break;
-            }
+        if (metrics != null) {
+            metrics.render.record(System.nanoTime() - renderStart);
         }
+    }
 
-        if (foodToRemove != null) {
-            foods.remove(foodToRemove);
+    /**
+     * @return false if the game ended on this tick
+     */
+    private boolean updateGame() {
+        long start = metrics != null ? System.nanoTime() : 0;
+        boolean alive = advance();
+        if (metrics != null) {
+            metrics.tick.record(System.nanoTime() - start);
         }
-
-        if (!ateFood) {
-            snake.removeLast();
+        if (!alive) {
+            gameOver();
+            return false;
         }
 
-        updateSpeed();
         updateStats();
-        drawGame();
+        return true;
     }
 
-    private void drawGame() {
-        gc.clearRect(0, 0, gameCanvas.getWidth(), gameCanvas.getHeight());
-
-        drawBackground();
-        drawRocks();
-        drawFoods();
-        drawSnake();
-    }
-
-    private void drawBackground() {
-        for (int x = 0; x < GAME_WIDTH; x++) {
-            for (int y = 0; y < GAME_HEIGHT; y++) {
-                Color color;
-                if ((x + y) % 2 == 0) {
-                    color = Color.rgb(162, 209, 73);
-                } else {
-                    color = Color.rgb(170, 215, 81);
+    private boolean advance() {
+        if (player == null) {
+            if (autopilotEnabled) {
+                engine.steer(autopilot.nextDirection(engine));
+            } else {
+                // at most one queued turn per tick, so quick presses become consecutive turns
+                Direction turn = input.poll(engine.getCurrentDirection(), System.nanoTime());
+                if (turn != null) {
+                    engine.steer(turn);
                 }
-
-                gc.setFill(color);
-                gc.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
             }
         }
-    }
-
-    private void drawSnake() {
-        for (int i = 0; i < snake.size(); i++) {
-            Point segment = snake.get(i);
-
-            double x = segment.x * CELL_SIZE;
-            double y = segment.y * CELL_SIZE;
-
-            if (i == 0) {
-                drawSnakeHead(x, y);
-            } else if (i == snake.size() - 1) {
-                drawSnakeTail(x, y, i);
-            } else {
-                drawSnakeBody(x, y, i);
+        if (telemetry == null) {
+            return tickEngine();
+        }
+        telemetry.beforeTick();
+        boolean alive = tickEngine();
+        telemetry.afterTick(alive);
+        return alive;
+    }
+
+    private boolean tickEngine() {
+        if (player != null) {
+            return player.step();
+        } else if (recorder != null) {
+            return recorder.tick();
+        } else if (stream != null) {
+            try {
+                return stream.tick();
+            } catch (IOException e) {
+                System.err.println("Stopped streaming: " + e.getMessage());
+                closeStream();
+                return engine.tick();
             }
+        } else {
+            return engine.tick();
         }
     }
 
-    private void drawSnakeHead(double x, double y) {
-        double size = CELL_SIZE - 2;
-
-        RadialGradient headGradient = new RadialGradient(
-                0, 0, 0.3, 0.3, 0.7, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
-                new Stop(0, Color.rgb(76, 175, 80)),
-                new Stop(0.6, Color.rgb(56, 142, 60)),
-                new Stop(1, Color.rgb(27, 94, 32))
-        );
-
-        gc.setFill(headGradient);
-        gc.fillRoundRect(x + 1, y + 1, size, size, 20, 20);
-
-        gc.setStroke(Color.rgb(27, 94, 32));
-        gc.setLineWidth(2);
-        gc.strokeRoundRect(x + 1, y + 1, size, size, 20, 20);
-
-        drawSnakeFace(x, y, size);
-    }
-
-    private void drawSnakeBody(double x, double y, int index) {
-        double size = CELL_SIZE - 2;
-
-        Color bodyColor = Color.rgb(76, 175, 80);
-        Color darkColor = Color.rgb(56, 142, 60);
-
-        LinearGradient bodyGradient = new LinearGradient(
-                0, 0, 1, 1, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
-                new Stop(0, bodyColor.brighter()),
-                new Stop(0.5, bodyColor),
-                new Stop(1, darkColor)
-        );
-
-        gc.setFill(bodyGradient);
-        gc.fillRoundRect(x + 1, y + 1, size, size, 15, 15);
-
-        gc.setStroke(darkColor);
-        gc.setLineWidth(1.5);
-        gc.strokeRoundRect(x + 1, y + 1, size, size, 15, 15);
-
-        if (index % 2 == 0) {
-            gc.setFill(Color.rgb(255, 255, 255, 0.2));
-            gc.fillOval(x + 4, y + 4, size - 8, 6);
+    /**
+     * Sends this frame's ticks to spectators right away rather than when the snake turns.
+     */
+    private void flushStream() {
+        if (stream == null) return;
+        try {
+            stream.flush();
+        } catch (IOException e) {
+            System.err.println("Stopped streaming: " + e.getMessage());
+            closeStream();
         }
-
-        gc.setFill(Color.rgb(129, 199, 132));
-        gc.fillOval(x + 6, y + 6, size - 12, size - 12);
     }
 
-    private void drawSnakeTail(double x, double y, int index) {
-        double size = CELL_SIZE - 2;
-
-        Color tailColor = Color.rgb(76, 175, 80);
-        Color darkColor = Color.rgb(56, 142, 60);
-
-        LinearGradient tailGradient = new LinearGradient(
-                0, 0, 0, 1, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
-                new Stop(0, tailColor),
-                new Stop(1, darkColor)
-        );
-
-        gc.setFill(tailGradient);
-
-        if (index % 2 == 0) {
-            gc.fillRoundRect(x + 1, y + 1, size, size, 20, 20);
-            gc.setStroke(darkColor);
-            gc.setLineWidth(1.5);
-            gc.strokeRoundRect(x + 1, y + 1, size, size, 20, 20);
-        } else {
-            gc.fillOval(x + 1, y + 1, size, size);
-            gc.setStroke(darkColor);
-            gc.setLineWidth(1.5);
-            gc.strokeOval(x + 1, y + 1, size, size);
+    private void exit() {
+        closeStream();
+        if (telemetryLog != null) {
+            try {
+                telemetryLog.close();
+            } catch (IOException e) {
+                System.err.println("Could not finish telemetry log: " + e.getMessage());
+            }
         }
+        System.exit(0);
     }
 
-    private void drawSnakeFace(double x, double y, double size) {
-        double eyeSize = size / 5;
-        double pupilSize = eyeSize / 2.5;
-
-        double leftEyeX, leftEyeY, rightEyeX, rightEyeY;
-
-        switch (currentDirection) {
-            case RIGHT:
-                leftEyeX = x + size - eyeSize * 2.2;
-                leftEyeY = y + size / 3;
-                rightEyeX = x + size - eyeSize * 2.2;
-                rightEyeY = y + size - size / 3 - eyeSize;
-                break;
-            case LEFT:
-                leftEyeX = x + eyeSize * 1.2;
-                leftEyeY = y + size / 3;
-                rightEyeX = x + eyeSize * 1.2;
-                rightEyeY = y + size - size / 3 - eyeSize;
-                break;
-            case UP:
-                leftEyeX = x + size / 3;
-                leftEyeY = y + eyeSize * 1.2;
-                rightEyeX = x + size - size / 3 - eyeSize;
-                rightEyeY = y + eyeSize * 1.2;
-                break;
-            default: // DOWN
-                leftEyeX = x + size / 3;
-                leftEyeY = y + size - eyeSize * 2.2;
-                rightEyeX = x + size - size / 3 - eyeSize;
-                rightEyeY = y + size - eyeSize * 2.2;
-                break;
+    private void closeStream() {
+        if (stream == null) return;
+        try {
+            stream.close();
+            streamChannel.close();
+        } catch (IOException e) {
+            System.err.println("Could not finish stream: " + e.getMessage());
         }
-
-        drawEye(leftEyeX, leftEyeY, eyeSize, pupilSize);
-        drawEye(rightEyeX, rightEyeY, eyeSize, pupilSize);
-
-        drawMouth(x, y, size);
-    }
-
-    private void drawEye(double x, double y, double eyeSize, double pupilSize) {
-        gc.setFill(Color.WHITE);
-        gc.fillOval(x, y, eyeSize, eyeSize);
-
-        gc.setStroke(Color.rgb(100, 100, 100, 0.3));
-        gc.setLineWidth(0.8);
-        gc.strokeOval(x, y, eyeSize, eyeSize);
-
-        gc.setFill(Color.rgb(30, 30, 30));
-        gc.fillOval(x + eyeSize/2 - pupilSize/2, y + eyeSize/2 - pupilSize/2, pupilSize, pupilSize);
-
-        gc.setFill(Color.WHITE);
-        gc.fillOval(x + eyeSize/3, y + eyeSize/3, pupilSize/3, pupilSize/3);
+        stream = null;
+        streamChannel = null;
     }
 
-    private void drawMouth(double x, double y, double size) {
-        double mouthWidth = size * 0.4;
-        double mouthHeight = size * 0.15;
-        double mouthY = y + size * 0.7;
-
-        switch (currentDirection) {
-            case RIGHT:
-                gc.setStroke(Color.rgb(27, 94, 32));
-                gc.setLineWidth(1.8);
-                gc.strokeArc(x + size/2, mouthY, mouthWidth, mouthHeight, 0, -180, javafx.scene.shape.ArcType.OPEN);
-                break;
-            case LEFT:
-                gc.setStroke(Color.rgb(27, 94, 32));
-                gc.setLineWidth(1.8);
-                gc.strokeArc(x + size/2 - mouthWidth, mouthY, mouthWidth, mouthHeight, 0, 180, javafx.scene.shape.ArcType.OPEN);
-                break;
-            case UP:
-                gc.setStroke(Color.rgb(27, 94, 32));
-                gc.setLineWidth(1.8);
-                gc.strokeArc(x + size/2 - mouthWidth/2, mouthY - mouthHeight, mouthWidth, mouthHeight, 90, 180, javafx.scene.shape.ArcType.OPEN);
-                break;
-            default: // DOWN
-                gc.setStroke(Color.rgb(27, 94, 32));
-                gc.setLineWidth(1.8);
-                gc.strokeArc(x + size/2 - mouthWidth/2, mouthY, mouthWidth, mouthHeight, -90, 180, javafx.scene.shape.ArcType.OPEN);
-                break;
+    private void saveSnapshot() {
+        if (player != null) return;
+        try {
+            Snapshot.save(engine, snapshotFile);
+        } catch (IOException e) {
+            System.err.println("Could not save snapshot to " + snapshotFile + ": " + e.getMessage());
         }
     }
 
-    private void drawFoods() {
-        for (Point food : foods) {
-            double x = food.x * CELL_SIZE;
-            double y = food.y * CELL_SIZE;
-            double size = CELL_SIZE - 6;
-
-            if (food.special) {
-                drawStarFood(x, y, size);
-            } else {
-                drawNormalFood(x, y, size);
+    /**
+     * Restores the last save into the running engine. The replay being recorded no longer
+     * matches the game after this, so recording stops until the next restart.
+     */
+    private void loadSnapshot() {
+        if (player != null || !Files.exists(snapshotFile)) return;
+        try {
+            GameEngine loaded = Snapshot.load(snapshotFile, engine);
+            if (loaded != engine) {
+                System.err.println("Snapshot " + snapshotFile + " is for a " + loaded.getWidth() + "x"
+                        + loaded.getHeight() + " board, not " + engine.getWidth() + "x" + engine.getHeight());
+                return;
             }
+        } catch (IOException e) {
+            System.err.println("Could not load snapshot from " + snapshotFile + ": " + e.getMessage());
+            return;
         }
-    }
-
-    private void drawNormalFood(double x, double y, double size) {
-        RadialGradient foodGradient = new RadialGradient(
-                0, 0, 0.4, 0.4, 0.8, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
-                new Stop(0, Color.rgb(255, 255, 255)),
-                new Stop(0.3, Color.rgb(255, 150, 150)),
-                new Stop(0.7, Color.rgb(244, 67, 54)),
-                new Stop(1, Color.rgb(211, 47, 47))
-        );
-
-        gc.setFill(foodGradient);
-        gc.fillOval(x + 3, y + 3, size, size);
-
-        gc.setStroke(Color.rgb(183, 28, 28));
-        gc.setLineWidth(2);
-        gc.strokeOval(x + 3, y + 3, size, size);
-
-        gc.setFill(Color.rgb(255, 255, 255, 0.6));
-        gc.fillOval(x + size/3, y + size/4, size/3, size/4);
-    }
 
-    private void drawStarFood(double x, double y, double size) {
-        RadialGradient starGradient = new RadialGradient(
-                0, 0, 0.4, 0.4, 0.8, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
-                new Stop(0, Color.rgb(255, 255, 220)),
-                new Stop(0.4, Color.rgb(255, 235, 59)),
-                new Stop(0.7, Color.rgb(255, 193, 7)),
-                new Stop(1, Color.rgb(245, 127, 23))
-        );
-
-        gc.setFill(starGradient);
-        gc.fillOval(x + 3, y + 3, size, size);
-
-        gc.setStroke(Color.rgb(245, 127, 23));
-        gc.setLineWidth(2.5);
-        gc.strokeOval(x + 3, y + 3, size, size);
-
-        gc.setFill(Color.rgb(255, 255, 255, 0.9));
-        drawStarShape(x + 3 + size/2, y + 3 + size/2, size/2.5);
-    }
-
-    private void drawStarShape(double centerX, double centerY, double radius) {
-        int points = 5;
-        double[] xPoints = new double[points * 2];
-        double[] yPoints = new double[points * 2];
-
-        for (int i = 0; i < points * 2; i++) {
-            double angle = Math.PI / points * i;
-            double r = (i % 2 == 0) ? radius : radius / 2;
-            xPoints[i] = centerX + Math.cos(angle - Math.PI/2) * r;
-            yPoints[i] = centerY + Math.sin(angle - Math.PI/2) * r;
+        recorder = null;
+        if (stream != null) {
+            stream.requestKeyframe();
+        }
+        accumulatedMillis = 0;
+        updateStats();
+        drawGame();
+        if (engine.isGameOver()) {
+            // its score went on the leaderboard when the game first ended
+            showFinished();
         }
-
-        gc.fillPolygon(xPoints, yPoints, points * 2);
     }
 
-    private void drawRocks() {
-        for (Point rock : rocks) {
-            double x = rock.x * CELL_SIZE;
-            double y = rock.y * CELL_SIZE;
-            double size = CELL_SIZE;
-
-            LinearGradient rockGradient = new LinearGradient(
-                    0, 0, 1, 1, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
-                    new Stop(0, Color.rgb(158, 158, 158)),
-                    new Stop(0.5, Color.rgb(117, 117, 117)),
-                    new Stop(1, Color.rgb(97, 97, 97))
-            );
-
-            gc.setFill(rockGradient);
-            gc.fillRect(x, y, size, size);
-
-            gc.setStroke(Color.rgb(66, 66, 66));
-            gc.setLineWidth(2);
-            gc.strokeRect(x, y, size, size);
-
-            gc.setFill(Color.rgb(189, 189, 189, 0.3));
-            gc.fillRect(x + 2, y + 2, size - 4, 4);
-            gc.fillRect(x + 2, y + 2, 4, size - 4);
-        }
+    private void drawGame() {
+        renderer.drawGame(engine);
     }
 
-    private void spawnFood() {
-        while (true) {
-            int x = random.nextInt(GAME_WIDTH);
-            int y = random.nextInt(GAME_HEIGHT);
+    private void drawChanges() {
+        renderer.drawChanges(engine);
+    }
 
-            if (isValidPosition(x, y)) {
-                foods.add(new Point(x, y));
-                break;
+    /**
+     * Network play: the server runs the game, so each frame just applies whatever state
+     * arrived and repaints the cells it changed.
+     */
+    private void startClient() {
+        client.join();
+        gameLoop = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                runClientFrame();
             }
-        }
+        };
+        gameLoop.start();
     }
 
-    private void spawnSpecialFood() {
-        if (foods.size() > 4) return;
-
-        while (true) {
-            int x = random.nextInt(GAME_WIDTH);
-            int y = random.nextInt(GAME_HEIGHT);
+    private void runClientFrame() {
+        if (client.isClosed()) {
+            gameLoop.stop();
+            showGameOver("DISCONNECTED");
+            return;
+        }
+        if (!client.poll()) return;
 
-            if (isValidPosition(x, y)) {
-                foods.add(new Point(x, y, Color.ORANGE, true, 50));
-                break;
-            }
+        renderer.drawChanges(client.getGame());
+        updateStats();
+        if (client.isAlive()) {
+            clientWasAlive = true;
+            gameOverPane.setVisible(false);
+        } else if (clientWasAlive && !gameOverPane.isVisible()) {
+            showGameOver("SCORE: " + client.getScore());
         }
     }
 
-    private void spawnRock() {
-        if (rocks.size() >= 15) return;
-
-        int attempts = 0;
-        while (attempts < 50) {
-            int x = random.nextInt(GAME_WIDTH);
-            int y = random.nextInt(GAME_HEIGHT);
-
-            if (isValidRockPosition(x, y)) {
-                rocks.add(new Point(x, y));
-                break;
-            }
-            attempts++;
+    private void updateStats() {
+        int score = client != null ? client.getScore() : engine.getScore();
+        scoreLabel.setText("SCORE: " + score);
+        if (score > highScore) {
+            highScore = score;
+            highScoreLabel.setText("HIGH SCORE: " + highScore);
         }
     }
 
-    private boolean isValidPosition(int x, int y) {
-        for (Point segment : snake) {
-            if (segment.x == x && segment.y == y) return false;
+    private void gameOver() {
+        if (recorder != null) {
+            saveReplay(recorder.finish());
+            recorder = null;
         }
-
-        for (Point rock : rocks) {
-            if (rock.x == x && rock.y == y) return false;
+        if (player == null) {
+            recordScore(engine.getScore(), engine.getSnake().size(), engine.getElapsedMillis(), engine.getSeed());
         }
+        showFinished();
+    }
 
-        for (Point food : foods) {
-            if (food.x == x && food.y == y) return false;
+    /**
+     * Stops the loop and shows the final score, without recording it anywhere.
+     */
+    private void showFinished() {
+        if (gameLoop != null) {
+            gameLoop.stop();
         }
-
-        return true;
+        flushStream();
+        showGameOver("SCORE: " + engine.getScore());
     }
 
-    private boolean isValidRockPosition(int x, int y) {
-        if (x < 2 && y < 2) return false;
-
-        for (Point segment : snake) {
-            if (segment.x == x && segment.y == y) return false;
-
-            if (Math.abs(segment.x - x) <= 1 && Math.abs(segment.y - y) <= 1) {
-                return false;
+    /**
+     * Switches instrumentation and its overlay on or off. Switching it on starts fresh
+     * histograms, registers them over JMX and, with {@code --metrics-dump}, appends a row to
+     * the dump file every second.
+     */
+    private void toggleMetrics() {
+        if (metrics != null) {
+            metrics.stop();
+            metrics = null;
+        } else {
+            metrics = new Metrics();
+            try {
+                metrics.start(Metrics.DEFAULT_SAMPLE_MILLIS, metricsDump);
+                metrics.registerMBean();
+            } catch (IOException | JMException e) {
+                System.err.println("Metrics export unavailable: " + e.getMessage());
             }
         }
-
-        for (Point rock : rocks) {
-            if (rock.x == x && rock.y == y) return false;
+        if (engine != null) {
+            engine.setMetrics(metrics);
         }
-
-        for (Point food : foods) {
-            if (food.x == x && food.y == y) return false;
-        }
-
-        return true;
+        metricsLabel.setVisible(metrics != null);
+        metricsLabel.setManaged(metrics != null);
+        lastOverlayNanos = 0;
     }
 
-    private boolean checkCollision(Point point) {
-        if (point.x < 0 || point.x >= GAME_WIDTH || point.y < 0 || point.y >= GAME_HEIGHT) {
-            return true;
-        }
-
-        for (int i = 1; i < snake.size(); i++) {
-            Point segment = snake.get(i);
-            if (segment.x == point.x && segment.y == point.y) {
-                return true;
+    private void openLeaderboard() {
+        leaderboardThread.execute(() -> {
+            try {
+                leaderboard = Leaderboard.open(leaderboardFile);
+                publishLeaderboard();
+            } catch (IOException e) {
+                System.err.println("Could not open leaderboard " + leaderboardFile + ": " + e.getMessage());
             }
-        }
+        });
+    }
 
-        for (Point rock : rocks) {
-            if (rock.x == point.x && rock.y == point.y) {
-                return true;
+    private void recordScore(int score, int length, long durationMillis, long seed) {
+        long date = System.currentTimeMillis();
+        leaderboardThread.execute(() -> {
+            if (leaderboard == null) return;
+            try {
+                leaderboard.add(score, length, durationMillis, seed, date);
+                leaderboard.flush();
+                publishLeaderboard();
+            } catch (IOException e) {
+                System.err.println("Could not save score to " + leaderboardFile + ": " + e.getMessage());
             }
-        }
-
-        return false;
+        });
     }
 
-    private void updateSpeed() {
-        if (foodsEaten % 5 == 0 && foodsEaten > 0) {
-            speed = Math.max(80, INITIAL_SPEED - (foodsEaten / 5) * 20);
+    /**
+     * Runs on the leaderboard thread; only the finished top list crosses over to the FX thread.
+     */
+    private void publishLeaderboard() throws IOException {
+        List<Leaderboard.Entry> top = leaderboard.top(LEADERBOARD_SIZE);
+        Platform.runLater(() -> showLeaderboard(top));
+    }
 
-            if (gameLoop != null) {
-                gameLoop.stop();
-                startGame();
+    private void showLeaderboard(List<Leaderboard.Entry> top) {
+        for (int i = 0; i < leaderboardRows.length; i++) {
+            if (i < top.size()) {
+                Leaderboard.Entry entry = top.get(i);
+                leaderboardRows[i].setText(String.format("%d. %-6d LEN %d", entry.rank, entry.score, entry.length));
+            } else {
+                leaderboardRows[i].setText((i + 1) + ". -");
             }
         }
-    }
-
-    private void updateStats() {
-        scoreLabel.setText("SCORE: " + score);
-        if (score > highScore) {
-            highScore = score;
+        if (!top.isEmpty() && top.get(0).score > highScore) {
+            highScore = top.get(0).score;
             highScoreLabel.setText("HIGH SCORE: " + highScore);
         }
     }
 
-    private void gameOver() {
-        gameRunning = false;
-        gameOver = true;
-
-        if (gameLoop != null) {
-            gameLoop.stop();
-        }
-
-        if (rockSpawnTimer != null) {
-            rockSpawnTimer.stop();
-        }
-
+    private void showGameOver(String message) {
         Label finalScore = (Label) gameOverPane.lookup("#finalScore");
         if (finalScore != null) {
-            finalScore.setText("SCORE: " + score);
+            finalScore.setText(message);
         }
 
         gameOverPane.setVisible(true);
     }
 
+    private void saveReplay(Replay finished) {
+        Path file = recordDir.resolve("snake-" + Long.toUnsignedString(finished.getSeed()) + ".replay");
+        try {
+            Files.createDirectories(recordDir);
+            finished.save(file);
+        } catch (IOException e) {
+            System.err.println("Could not save replay to " + file + ": " + e.getMessage());
+        }
+    }
+
     private void togglePause() {
         gamePaused = !gamePaused;
         if (gamePaused) {
@@ -870,14 +853,14 @@ public class SnakeGame extends Application {
 
     private void resetGame() {
         gameOverPane.setVisible(false);
-
-        if (rockSpawnTimer != null) {
-            rockSpawnTimer.stop();
+        if (client != null) {
+            client.join();
+            root.requestFocus();
+            return;
         }
 
         setupGame();
         startGame();
-        startRockSpawner();
 
         root.requestFocus();
     }
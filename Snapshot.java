@@ -0,0 +1,94 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Full copy of a running game - board, snake, items, score and generator state - that
+ * carries on exactly where it was saved.
+ * <p>
+ * Binary layout (big-endian): magic {@code "SNKS"}, version byte, width, height, rock cap,
+ * then the engine state: seed, generator state, ticks, elapsed time, next rock time, score,
+ * speed, foods eaten, current and next direction, game-over flag, the snake as a length and
+ * its cells head first, the foods as cell, special flag and points, the rocks as cells, and
+ * the board's free cells in the order spawns pick from. The snake and the free cells are
+ * written and read with bulk int copies, so even very long snakes cost little more than the
+ * board clear.
+ */
+public final class Snapshot {
+
+    static final int MAGIC = 0x534E4B53;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES + 1 + 3 * Integer.BYTES;
+
+    private Snapshot() {
+    }
+
+    public static int sizeOf(GameEngine engine) {
+        return HEADER_SIZE + engine.stateSize();
+    }
+
+    /**
+     * Writes the snapshot at the buffer's position, which must have {@link #sizeOf} bytes left.
+     */
+    public static void write(GameEngine engine, ByteBuffer out) {
+        out.putInt(MAGIC).put(VERSION);
+        out.putInt(engine.getWidth()).putInt(engine.getHeight()).putInt(engine.getMaxRocks());
+        engine.writeState(out);
+    }
+
+    /**
+     * Reads a snapshot into {@code reuse} when it has the same board size and rock cap, or
+     * into a new engine otherwise.
+     */
+    public static GameEngine read(ByteBuffer in, GameEngine reuse) throws IOException {
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        int width = in.getInt();
+        int height = in.getInt();
+        int maxRocks = in.getInt();
+        GameEngine engine = reuse;
+        if (engine == null || engine.getWidth() != width || engine.getHeight() != height
+                || engine.getMaxRocks() != maxRocks) {
+            engine = new GameEngine(width, height, 0, maxRocks);
+        }
+        engine.readState(in);
+        return engine;
+    }
+
+    public static void save(GameEngine engine, Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(sizeOf(engine));
+        write(engine, buffer);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static GameEngine load(Path file) throws IOException {
+        return load(file, null);
+    }
+
+    /**
+     * Maps the file and reads it as {@link #read} does.
+     */
+    public static GameEngine load(Path file, GameEngine reuse) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, reuse);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ta.tugasakhir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Follows a stream written by {@link SnapshotWriter}, one tick per {@link #step()}. Keyframes
+ * are loaded into the same engine whenever the board size allows, so a spectator can keep
+ * drawing it. When the channel has no more data yet - a file still being written, or a
+ * non-blocking socket - {@code step()} returns false and can simply be called again later.
+ */
+public final class SnapshotReader {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final ReadableByteChannel in;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).flip();
+    private GameEngine engine;
+    private Direction runDirection;
+    private int runRemaining;
+    private boolean finished;
+
+    public SnapshotReader(ReadableByteChannel in) {
+        this.in = in;
+    }
+
+    /**
+     * @return true if a tick was replayed, false if the stream has ended or has nothing
+     *         more to read yet
+     */
+    public boolean step() throws IOException {
+        while (runRemaining == 0) {
+            if (finished || !readRecord()) return false;
+        }
+        runRemaining--;
+        engine.steer(runDirection);
+        engine.tick();
+        return true;
+    }
+
+    private boolean readRecord() throws IOException {
+        if (!fill(1)) return false;
+        byte type = buffer.get(buffer.position());
+        switch (type) {
+            case SnapshotWriter.RECORD_KEYFRAME: {
+                if (!fill(1 + Integer.BYTES)) return false;
+                int size = buffer.getInt(buffer.position() + 1);
+                if (!fill(1 + Integer.BYTES + size)) return false;
+                buffer.position(buffer.position() + 1 + Integer.BYTES);
+                int end = buffer.position() + size;
+                engine = Snapshot.read(buffer.slice().limit(size), engine);
+                buffer.position(end);
+                return true;
+            }
+            case SnapshotWriter.RECORD_TICKS:
+                if (!fill(SnapshotWriter.TICKS_RECORD_SIZE)) return false;
+                if (engine == null) throw new IOException("Snapshot stream does not start with a keyframe");
+                buffer.get();
+                runRemaining = buffer.getInt();
+                runDirection = DIRECTIONS[buffer.get()];
+                return true;
+            case SnapshotWriter.RECORD_END:
+                buffer.get();
+                finished = true;
+                return false;
+            default:
+                throw new IOException("Bad snapshot record " + type);
+        }
+    }
+
+    /**
+     * Makes sure {@code bytes} bytes are buffered, reading whatever the channel has.
+     */
+    private boolean fill(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (buffer.capacity() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1);
+                grown.put(buffer);
+                buffer = grown;
+            } else {
+                buffer.compact();
+            }
+            int read = in.read(buffer);
+            buffer.flip();
+            if (read <= 0) return false;
+        }
+        return true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * The game as of the last tick read, or null before the first keyframe.
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: SnapshotReader <stream-file>");
+            System.exit(2);
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ)) {
+            SnapshotReader reader = new SnapshotReader(channel);
+            long steps = 0;
+            long start = System.nanoTime();
+            while (reader.step()) {
+                steps++;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            GameEngine engine = reader.getEngine();
+            if (engine == null) {
+                System.out.println("no keyframe in stream");
+                return;
+            }
+            System.out.printf("ticks=%d score=%d length=%d (%d steps, %.0f ticks/s)%n",
+                    engine.getTicks(), engine.getScore(), engine.getSnake().size(),
+                    steps, steps * 1e9 / Math.max(1, elapsed));
+        }
+    }
+}
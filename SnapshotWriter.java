@@ -0,0 +1,137 @@
+package ta.tugasakhir;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams a game as it is played: a {@link Snapshot} keyframe every few hundred ticks and,
+ * in between, runs of ticks with the direction the snake moved in. The engine is
+ * deterministic once its generator state is known, so that is all a {@link SnapshotReader}
+ * needs to follow along - a spectator tuning in, or a player resuming from the last
+ * keyframe.
+ * <p>
+ * Records: {@link #RECORD_KEYFRAME} followed by an int length and the snapshot,
+ * {@link #RECORD_TICKS} followed by an int tick count and a {@link Direction} ordinal, and
+ * {@link #RECORD_END}. A keyframe is also written whenever the engine was reset or loaded
+ * from somewhere else between ticks.
+ */
+public final class SnapshotWriter implements Closeable {
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 600;
+
+    static final byte RECORD_KEYFRAME = 1;
+    static final byte RECORD_TICKS = 2;
+    static final byte RECORD_END = 3;
+    static final int TICKS_RECORD_SIZE = 1 + Integer.BYTES + 1;
+
+    private final GameEngine engine;
+    private final WritableByteChannel out;
+    private final int keyframeInterval;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+    private long expectedTick = -1;
+    private long nextKeyframe;
+    private byte runDirection = -1;
+    private int runLength;
+    private long keyframes;
+
+    public SnapshotWriter(GameEngine engine, WritableByteChannel out, int keyframeInterval) {
+        this.engine = engine;
+        this.out = out;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Ticks the engine, recording the tick first.
+     *
+     * @return the engine's own tick result
+     */
+    public boolean tick() throws IOException {
+        long now = engine.getTicks();
+        if (now != expectedTick || now >= nextKeyframe) {
+            endRun();
+            writeKeyframe();
+            nextKeyframe = now + keyframeInterval;
+        }
+
+        byte direction = (byte) engine.getNextDirection().ordinal();
+        if (direction != runDirection) {
+            endRun();
+            runDirection = direction;
+        }
+        runLength++;
+
+        boolean alive = engine.tick();
+        expectedTick = engine.getTicks();
+        return alive;
+    }
+
+    private void writeKeyframe() throws IOException {
+        int size = Snapshot.sizeOf(engine);
+        reserve(1 + Integer.BYTES + size);
+        buffer.put(RECORD_KEYFRAME).putInt(size);
+        Snapshot.write(engine, buffer);
+        keyframes++;
+    }
+
+    private void endRun() throws IOException {
+        if (runLength == 0) return;
+        reserve(TICKS_RECORD_SIZE);
+        buffer.put(RECORD_TICKS).putInt(runLength).put(runDirection);
+        runLength = 0;
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        drain();
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes a keyframe before the next tick, e.g. after the engine's state was replaced by
+     * a snapshot that happens to be at the expected tick.
+     */
+    public void requestKeyframe() {
+        expectedTick = -1;
+    }
+
+    /**
+     * Writes out everything recorded so far, including the ticks of the current run, so a
+     * spectator sees them without waiting for the snake to turn.
+     */
+    public void flush() throws IOException {
+        endRun();
+        drain();
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public long getKeyframes() {
+        return keyframes;
+    }
+
+    /**
+     * Ends the stream. The channel is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        endRun();
+        reserve(1);
+        buffer.put(RECORD_END);
+        drain();
+    }
+}
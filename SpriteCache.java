@@ -0,0 +1,103 @@
+package ta.tugasakhir;
+
+import javafx.application.Platform;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Every visual variant pre-rendered once into a cell-sized image: the rock, both foods, body
+ * and tail per cell parity and the head per direction. Drawing a frame is then just
+ * drawImage calls with no gradient, Stop or trigonometry work. Build a new cache when the
+ * cell size or the look changes.
+ */
+final class SpriteCache {
+
+    private static final int ROCK = 0;
+    private static final int FOOD = 1;
+    private static final int SPECIAL_FOOD = 2;
+    private static final int BODY = 3;
+    private static final int TAIL = 5;
+    private static final int HEAD = 7;
+    private static final int COUNT = HEAD + Direction.values().length;
+
+    final int cellSize;
+    private final Image[] sprites = new Image[COUNT];
+
+    /**
+     * Snapshots need the FX thread; when called from another thread the rendering is handed
+     * to it and this constructor waits.
+     */
+    SpriteCache(int cellSize) {
+        this.cellSize = cellSize;
+
+        if (Platform.isFxApplicationThread()) {
+            render();
+        } else {
+            FutureTask<Void> task = new FutureTask<>(this::render, null);
+            Platform.runLater(task);
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rendering sprites", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not render sprites", e.getCause());
+            }
+        }
+    }
+
+    private void render() {
+        Canvas canvas = new Canvas(COUNT * cellSize, cellSize);
+        SpritePainter painter = new SpritePainter(canvas.getGraphicsContext2D(), cellSize);
+
+        painter.drawRock(ROCK * cellSize, 0);
+        painter.drawNormalFood(FOOD * cellSize, 0, cellSize - 6);
+        painter.drawStarFood(SPECIAL_FOOD * cellSize, 0, cellSize - 6);
+        for (int parity = 0; parity < 2; parity++) {
+            painter.drawSnakeBody((BODY + parity) * cellSize, 0, parity);
+            painter.drawSnakeTail((TAIL + parity) * cellSize, 0, parity);
+        }
+        for (Direction direction : Direction.values()) {
+            painter.drawSnakeHead((HEAD + direction.ordinal()) * cellSize, 0, direction);
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        PixelReader strip = canvas.snapshot(parameters, null).getPixelReader();
+
+        for (int i = 0; i < COUNT; i++) {
+            sprites[i] = new WritableImage(strip, i * cellSize, 0, cellSize, cellSize);
+        }
+    }
+
+    Image rock() {
+        return sprites[ROCK];
+    }
+
+    Image food() {
+        return sprites[FOOD];
+    }
+
+    Image specialFood() {
+        return sprites[SPECIAL_FOOD];
+    }
+
+    Image body(int parity) {
+        return sprites[BODY + (parity & 1)];
+    }
+
+    Image tail(int parity) {
+        return sprites[TAIL + (parity & 1)];
+    }
+
+    Image head(Direction direction) {
+        return sprites[HEAD + direction.ordinal()];
+    }
+}
@@ -0,0 +1,268 @@
+package ta.tugasakhir;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+
+/**
+ * Vector drawing of the snake, food and rock visuals at a given cell position. Used by
+ * {@link SpriteCache} to paint each variant once; every shape stays inside its cell.
+ */
+class SpritePainter {
+
+    private static final int STAR_POINTS = 5;
+    private static final double[] STAR_COS = new double[STAR_POINTS * 2];
+    private static final double[] STAR_SIN = new double[STAR_POINTS * 2];
+
+    static {
+        for (int i = 0; i < STAR_POINTS * 2; i++) {
+            double angle = Math.PI / STAR_POINTS * i;
+            STAR_COS[i] = Math.cos(angle - Math.PI/2);
+            STAR_SIN[i] = Math.sin(angle - Math.PI/2);
+        }
+    }
+
+    private final GraphicsContext gc;
+    private final int cellSize;
+    private final double[] starX = new double[STAR_POINTS * 2];
+    private final double[] starY = new double[STAR_POINTS * 2];
+
+    SpritePainter(GraphicsContext gc, int cellSize) {
+        this.gc = gc;
+        this.cellSize = cellSize;
+    }
+
+    void drawSnakeHead(double x, double y, Direction direction) {
+        double size = cellSize - 2;
+
+        RadialGradient headGradient = new RadialGradient(
+                0, 0, 0.3, 0.3, 0.7, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
+                new Stop(0, Color.rgb(76, 175, 80)),
+                new Stop(0.6, Color.rgb(56, 142, 60)),
+                new Stop(1, Color.rgb(27, 94, 32))
+        );
+
+        gc.setFill(headGradient);
+        gc.fillRoundRect(x + 1, y + 1, size, size, 20, 20);
+
+        gc.setStroke(Color.rgb(27, 94, 32));
+        gc.setLineWidth(2);
+        gc.strokeRoundRect(x + 1, y + 1, size, size, 20, 20);
+
+        drawSnakeFace(x, y, size, direction);
+    }
+
+    void drawSnakeBody(double x, double y, int parity) {
+        double size = cellSize - 2;
+
+        Color bodyColor = Color.rgb(76, 175, 80);
+        Color darkColor = Color.rgb(56, 142, 60);
+
+        LinearGradient bodyGradient = new LinearGradient(
+                0, 0, 1, 1, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
+                new Stop(0, bodyColor.brighter()),
+                new Stop(0.5, bodyColor),
+                new Stop(1, darkColor)
+        );
+
+        gc.setFill(bodyGradient);
+        gc.fillRoundRect(x + 1, y + 1, size, size, 15, 15);
+
+        gc.setStroke(darkColor);
+        gc.setLineWidth(1.5);
+        gc.strokeRoundRect(x + 1, y + 1, size, size, 15, 15);
+
+        if (parity % 2 == 0) {
+            gc.setFill(Color.rgb(255, 255, 255, 0.2));
+            gc.fillOval(x + 4, y + 4, size - 8, 6);
+        }
+
+        gc.setFill(Color.rgb(129, 199, 132));
+        gc.fillOval(x + 6, y + 6, size - 12, size - 12);
+    }
+
+    void drawSnakeTail(double x, double y, int parity) {
+        double size = cellSize - 2;
+
+        Color tailColor = Color.rgb(76, 175, 80);
+        Color darkColor = Color.rgb(56, 142, 60);
+
+        LinearGradient tailGradient = new LinearGradient(
+                0, 0, 0, 1, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
+                new Stop(0, tailColor),
+                new Stop(1, darkColor)
+        );
+
+        gc.setFill(tailGradient);
+
+        if (parity % 2 == 0) {
+            gc.fillRoundRect(x + 1, y + 1, size, size, 20, 20);
+            gc.setStroke(darkColor);
+            gc.setLineWidth(1.5);
+            gc.strokeRoundRect(x + 1, y + 1, size, size, 20, 20);
+        } else {
+            gc.fillOval(x + 1, y + 1, size, size);
+            gc.setStroke(darkColor);
+            gc.setLineWidth(1.5);
+            gc.strokeOval(x + 1, y + 1, size, size);
+        }
+    }
+
+    private void drawSnakeFace(double x, double y, double size, Direction direction) {
+        double eyeSize = size / 5;
+        double pupilSize = eyeSize / 2.5;
+
+        double leftEyeX, leftEyeY, rightEyeX, rightEyeY;
+
+        switch (direction) {
+            case RIGHT:
+                leftEyeX = x + size - eyeSize * 2.2;
+                leftEyeY = y + size / 3;
+                rightEyeX = x + size - eyeSize * 2.2;
+                rightEyeY = y + size - size / 3 - eyeSize;
+                break;
+            case LEFT:
+                leftEyeX = x + eyeSize * 1.2;
+                leftEyeY = y + size / 3;
+                rightEyeX = x + eyeSize * 1.2;
+                rightEyeY = y + size - size / 3 - eyeSize;
+                break;
+            case UP:
+                leftEyeX = x + size / 3;
+                leftEyeY = y + eyeSize * 1.2;
+                rightEyeX = x + size - size / 3 - eyeSize;
+                rightEyeY = y + eyeSize * 1.2;
+                break;
+            default: // DOWN
+                leftEyeX = x + size / 3;
+                leftEyeY = y + size - eyeSize * 2.2;
+                rightEyeX = x + size - size / 3 - eyeSize;
+                rightEyeY = y + size - eyeSize * 2.2;
+                break;
+        }
+
+        drawEye(leftEyeX, leftEyeY, eyeSize, pupilSize);
+        drawEye(rightEyeX, rightEyeY, eyeSize, pupilSize);
+
+        drawMouth(x, y, size, direction);
+    }
+
+    private void drawEye(double x, double y, double eyeSize, double pupilSize) {
+        gc.setFill(Color.WHITE);
+        gc.fillOval(x, y, eyeSize, eyeSize);
+
+        gc.setStroke(Color.rgb(100, 100, 100, 0.3));
+        gc.setLineWidth(0.8);
+        gc.strokeOval(x, y, eyeSize, eyeSize);
+
+        gc.setFill(Color.rgb(30, 30, 30));
+        gc.fillOval(x + eyeSize/2 - pupilSize/2, y + eyeSize/2 - pupilSize/2, pupilSize, pupilSize);
+
+        gc.setFill(Color.WHITE);
+        gc.fillOval(x + eyeSize/3, y + eyeSize/3, pupilSize/3, pupilSize/3);
+    }
+
+    private void drawMouth(double x, double y, double size, Direction direction) {
+        double mouthWidth = size * 0.4;
+        double mouthHeight = size * 0.15;
+        double mouthY = y + size * 0.7;
+
+        switch (direction) {
+            case RIGHT:
+                gc.setStroke(Color.rgb(27, 94, 32));
+                gc.setLineWidth(1.8);
+                gc.strokeArc(x + size/2, mouthY, mouthWidth, mouthHeight, 0, -180, javafx.scene.shape.ArcType.OPEN);
+                break;
+            case LEFT:
+                gc.setStroke(Color.rgb(27, 94, 32));
+                gc.setLineWidth(1.8);
+                gc.strokeArc(x + size/2 - mouthWidth, mouthY, mouthWidth, mouthHeight, 0, 180, javafx.scene.shape.ArcType.OPEN);
+                break;
+            case UP:
+                gc.setStroke(Color.rgb(27, 94, 32));
+                gc.setLineWidth(1.8);
+                gc.strokeArc(x + size/2 - mouthWidth/2, mouthY - mouthHeight, mouthWidth, mouthHeight, 90, 180, javafx.scene.shape.ArcType.OPEN);
+                break;
+            default: // DOWN
+                gc.setStroke(Color.rgb(27, 94, 32));
+                gc.setLineWidth(1.8);
+                gc.strokeArc(x + size/2 - mouthWidth/2, mouthY, mouthWidth, mouthHeight, -90, 180, javafx.scene.shape.ArcType.OPEN);
+                break;
+        }
+    }
+
+    void drawNormalFood(double x, double y, double size) {
+        RadialGradient foodGradient = new RadialGradient(
+                0, 0, 0.4, 0.4, 0.8, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
+                new Stop(0, Color.rgb(255, 255, 255)),
+                new Stop(0.3, Color.rgb(255, 150, 150)),
+                new Stop(0.7, Color.rgb(244, 67, 54)),
+                new Stop(1, Color.rgb(211, 47, 47))
+        );
+
+        gc.setFill(foodGradient);
+        gc.fillOval(x + 3, y + 3, size, size);
+
+        gc.setStroke(Color.rgb(183, 28, 28));
+        gc.setLineWidth(2);
+        gc.strokeOval(x + 3, y + 3, size, size);
+
+        gc.setFill(Color.rgb(255, 255, 255, 0.6));
+        gc.fillOval(x + size/3, y + size/4, size/3, size/4);
+    }
+
+    void drawStarFood(double x, double y, double size) {
+        RadialGradient starGradient = new RadialGradient(
+                0, 0, 0.4, 0.4, 0.8, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
+                new Stop(0, Color.rgb(255, 255, 220)),
+                new Stop(0.4, Color.rgb(255, 235, 59)),
+                new Stop(0.7, Color.rgb(255, 193, 7)),
+                new Stop(1, Color.rgb(245, 127, 23))
+        );
+
+        gc.setFill(starGradient);
+        gc.fillOval(x + 3, y + 3, size, size);
+
+        gc.setStroke(Color.rgb(245, 127, 23));
+        gc.setLineWidth(2.5);
+        gc.strokeOval(x + 3, y + 3, size, size);
+
+        gc.setFill(Color.rgb(255, 255, 255, 0.9));
+        drawStarShape(x + 3 + size/2, y + 3 + size/2, size/2.5);
+    }
+
+    private void drawStarShape(double centerX, double centerY, double radius) {
+        for (int i = 0; i < STAR_COS.length; i++) {
+            double r = (i % 2 == 0) ? radius : radius / 2;
+            starX[i] = centerX + STAR_COS[i] * r;
+            starY[i] = centerY + STAR_SIN[i] * r;
+        }
+
+        gc.fillPolygon(starX, starY, STAR_COS.length);
+    }
+
+    void drawRock(double x, double y) {
+        double size = cellSize;
+
+        LinearGradient rockGradient = new LinearGradient(
+                0, 0, 1, 1, true, javafx.scene.paint.CycleMethod.NO_CYCLE,
+                new Stop(0, Color.rgb(158, 158, 158)),
+                new Stop(0.5, Color.rgb(117, 117, 117)),
+                new Stop(1, Color.rgb(97, 97, 97))
+        );
+
+        gc.setFill(rockGradient);
+        gc.fillRect(x, y, size, size);
+
+        // inset by half the line width so the outline stays inside the cell
+        gc.setStroke(Color.rgb(66, 66, 66));
+        gc.setLineWidth(2);
+        gc.strokeRect(x + 1, y + 1, size - 2, size - 2);
+
+        gc.setFill(Color.rgb(189, 189, 189, 0.3));
+        gc.fillRect(x + 2, y + 2, size - 4, 4);
+        gc.fillRect(x + 2, y + 2, 4, size - 4);
+    }
+}
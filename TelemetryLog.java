@@ -0,0 +1,412 @@
+package ta.tugasakhir;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of fixed-size tick records in a memory-mapped file, for soak runs that
+ * play for hours. Appending is a slot reservation and a few stores into the mapping, so it
+ * never blocks on I/O and any number of threads can share one log; a background thread
+ * forces written pages to disk every few hundred milliseconds.
+ * <p>
+ * File layout (big-endian): a {@value #HEADER_SIZE}-byte header - magic {@code "SNKT"},
+ * version byte, clean-close flag, record size, record count - then {@value #RECORD_SIZE}-byte
+ * records: seed, tick, head x and y, score, length, rock x and y (-1 if none), input
+ * {@link Direction} ordinal and event flags. The flags byte is stored last and always has
+ * {@link #VALID} set, so after a crash a reader can tell written records from the zeroed
+ * rest of the file.
+ */
+public final class TelemetryLog implements Closeable {
+
+    public static final int RECORD_SIZE = 32;
+    public static final int DEFAULT_FLUSH_MILLIS = 200;
+
+    public static final byte FOOD = 1;
+    public static final byte SPECIAL_FOOD = 2;
+    public static final byte ROCK = 4;
+    public static final byte DEATH = 8;
+    static final byte VALID = (byte) 0x80;
+
+    static final int MAGIC = 0x534E4B54;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    private static final int CLOSED_OFFSET = 5;
+    private static final int COUNT_OFFSET = 8;
+
+    /** 2M records, 64 MB per mapping. */
+    static final int SEGMENT_SHIFT = 21;
+    static final long SEGMENT_RECORDS = 1L << SEGMENT_SHIFT;
+    static final long SEGMENT_BYTES = SEGMENT_RECORDS * RECORD_SIZE;
+
+    static final int SEED = 0;
+    static final int TICK = 8;
+    static final int HEAD_X = 12;
+    static final int HEAD_Y = 14;
+    static final int SCORE = 16;
+    static final int LENGTH = 20;
+    static final int ROCK_X = 24;
+    static final int ROCK_Y = 26;
+    static final int INPUT = 28;
+    static final int EVENTS = 29;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int segmentShift;
+    private final long segmentRecords;
+    private final long segmentBytes;
+    private final AtomicLong next = new AtomicLong();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[16];
+    private final long flushMillis;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    private TelemetryLog(FileChannel channel, long flushMillis, int segmentShift) throws IOException {
+        this.channel = channel;
+        this.flushMillis = flushMillis;
+        this.segmentShift = segmentShift;
+        this.segmentRecords = 1L << segmentShift;
+        this.segmentBytes = segmentRecords * RECORD_SIZE;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.putInt(0, MAGIC).put(4, VERSION).put(CLOSED_OFFSET, (byte) 0)
+                .putShort(6, (short) RECORD_SIZE).putLong(COUNT_OFFSET, 0);
+        this.flusher = new Thread(this::flushLoop, "telemetry-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Creates the log, replacing any file already there.
+     */
+    public static TelemetryLog create(Path file) throws IOException {
+        return create(file, DEFAULT_FLUSH_MILLIS);
+    }
+
+    public static TelemetryLog create(Path file, long flushMillis) throws IOException {
+        return create(file, flushMillis, SEGMENT_SHIFT);
+    }
+
+    /**
+     * @param segmentShift log2 of the records per mapping; small values let tests cross many
+     *                     segment boundaries. The file layout does not depend on it.
+     */
+    static TelemetryLog create(Path file, long flushMillis, int segmentShift) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new TelemetryLog(channel, flushMillis, segmentShift);
+    }
+
+    /**
+     * Appends one record. Safe to call from several threads at once.
+     */
+    void append(long seed, long tick, int headX, int headY, int score, int length,
+                int rockX, int rockY, Direction input, int events) {
+        long index = next.getAndIncrement();
+        MappedByteBuffer segment = segment((int) (index >>> segmentShift));
+        int at = (int) (index & (segmentRecords - 1)) * RECORD_SIZE;
+        segment.putLong(at + SEED, seed)
+                .putInt(at + TICK, (int) tick)
+                .putShort(at + HEAD_X, (short) headX)
+                .putShort(at + HEAD_Y, (short) headY)
+                .putInt(at + SCORE, score)
+                .putInt(at + LENGTH, length)
+                .putShort(at + ROCK_X, (short) rockX)
+                .putShort(at + ROCK_Y, (short) rockY)
+                .put(at + INPUT, (byte) input.ordinal());
+        // last, so a reader never sees a record as valid before the rest of it is there
+        segment.put(at + EVENTS, (byte) (events | VALID));
+    }
+
+    private MappedByteBuffer segment(int index) {
+        MappedByteBuffer[] current = segments;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        return mapSegment(index);
+    }
+
+    /**
+     * Maps a segment the first time it is written to. Mapping past the end of the file grows
+     * it. A segment the flusher already released is simply mapped again.
+     */
+    private synchronized MappedByteBuffer mapSegment(int index) {
+        MappedByteBuffer[] current = segments;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        MappedByteBuffer[] updated = Arrays.copyOf(current, Math.max(current.length, Integer.highestOneBit(index) << 1));
+        try {
+            updated[index] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + index * segmentBytes, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not grow telemetry log", e);
+        }
+        segments = updated;
+        return updated[index];
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(flushMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Forces every mapped segment and the record count to disk. Segments well behind the one
+     * being written are dropped afterwards so hours of records do not stay mapped. An appender
+     * that reserved a slot in a dropped segment still holds its own reference to the mapping,
+     * which stays valid until that is gone too, and the file is mapped shared, so its store
+     * lands in the same pages either way.
+     */
+    private synchronized void flush() {
+        long count = next.get();
+        int writing = (int) (count >>> segmentShift);
+        MappedByteBuffer[] current = Arrays.copyOf(segments, segments.length);
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == null) continue;
+            current[i].force();
+            if (i < writing - 1) {
+                current[i] = null;
+            }
+        }
+        segments = current;
+        header.putLong(COUNT_OFFSET, count);
+        header.force();
+    }
+
+    public long getRecordCount() {
+        return next.get();
+    }
+
+    /**
+     * Flushes, marks the log as cleanly closed and trims the file to the records written.
+     * Appending must have stopped.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        header.put(CLOSED_OFFSET, (byte) 1);
+        header.force();
+        segments = new MappedByteBuffer[0];
+        channel.truncate(HEADER_SIZE + next.get() * RECORD_SIZE);
+        channel.close();
+    }
+
+    /**
+     * Sequential scan over a log, one record at a time through a read-only mapping. Records
+     * that were never completely written are skipped.
+     */
+    public static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final long count;
+        private final boolean clean;
+        private MappedByteBuffer segment;
+        private int segmentIndex = -1;
+        private long position = -1;
+        private int at;
+
+        public Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                channel.close();
+                throw new IOException("Not a telemetry log");
+            }
+            if (header.get(4) != VERSION || header.getShort(6) != RECORD_SIZE) {
+                channel.close();
+                throw new IOException("Unsupported telemetry log version " + header.get(4));
+            }
+            this.clean = header.get(CLOSED_OFFSET) != 0;
+            long inFile = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            // after a crash the count lags behind; scan the whole file and rely on VALID
+            this.count = clean ? Math.min(header.getLong(COUNT_OFFSET), inFile) : inFile;
+        }
+
+        /**
+         * Moves to the next complete record.
+         *
+         * @return false at the end of the log
+         */
+        public boolean next() throws IOException {
+            while (++position < count) {
+                int index = (int) (position >>> SEGMENT_SHIFT);
+                if (index != segmentIndex) {
+                    long start = HEADER_SIZE + index * SEGMENT_BYTES;
+                    long size = Math.min(SEGMENT_BYTES, (count - ((long) index << SEGMENT_SHIFT)) * RECORD_SIZE);
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                    segmentIndex = index;
+                }
+                at = (int) (position & (SEGMENT_RECORDS - 1)) * RECORD_SIZE;
+                if ((segment.get(at + EVENTS) & VALID) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return whether the writer closed the log, as opposed to the process dying
+         */
+        public boolean isClean() {
+            return clean;
+        }
+
+        public long seed() {
+            return segment.getLong(at + SEED);
+        }
+
+        public int tick() {
+            return segment.getInt(at + TICK);
+        }
+
+        public int headX() {
+            return segment.getShort(at + HEAD_X);
+        }
+
+        public int headY() {
+            return segment.getShort(at + HEAD_Y);
+        }
+
+        public int score() {
+            return segment.getInt(at + SCORE);
+        }
+
+        public int length() {
+            return segment.getInt(at + LENGTH);
+        }
+
+        public int rockX() {
+            return segment.getShort(at + ROCK_X);
+        }
+
+        public int rockY() {
+            return segment.getShort(at + ROCK_Y);
+        }
+
+        public Direction input() {
+            return DIRECTIONS[segment.get(at + INPUT)];
+        }
+
+        /**
+         * Event flags without {@link #VALID}.
+         */
+        public int events() {
+            return segment.get(at + EVENTS) & ~VALID;
+        }
+
+        @Override
+        public void close() throws IOException {
+            segment = null;
+            channel.close();
+        }
+    }
+
+    private static int parseEvents(String names) {
+        int mask = 0;
+        for (String name : names.split(",")) {
+            switch (name) {
+                case "food": mask |= FOOD; break;
+                case "special": mask |= SPECIAL_FOOD; break;
+                case "rock": mask |= ROCK; break;
+                case "death": mask |= DEATH; break;
+                default: throw new IllegalArgumentException("Unknown event " + name);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Scans a log, printing the records that match the filters followed by totals.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        String file = null;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else if (file == null && !arg.startsWith("--")) {
+                file = arg;
+            } else {
+                file = null;
+                break;
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: TelemetryLog <log-file> [--seed=S] [--events=food,special,rock,death] "
+                    + "[--min-score=N] [--limit=N]");
+            System.exit(2);
+        }
+
+        int events = options.containsKey("events") ? parseEvents(options.get("events")) : 0;
+        boolean filterSeed = options.containsKey("seed");
+        long seed = filterSeed ? Long.parseLong(options.get("seed")) : 0;
+        int minScore = Integer.parseInt(options.getOrDefault("min-score", "0"));
+        long limit = Long.parseLong(options.getOrDefault("limit", "100"));
+
+        long records = 0;
+        long matched = 0;
+        long games = 0;
+        long foods = 0;
+        long rocks = 0;
+        long start = System.nanoTime();
+        try (Reader reader = new Reader(Paths.get(file))) {
+            while (reader.next()) {
+                records++;
+                int flags = reader.events();
+                if ((flags & DEATH) != 0) games++;
+                if ((flags & (FOOD | SPECIAL_FOOD)) != 0) foods++;
+                if ((flags & ROCK) != 0) rocks++;
+
+                if (events != 0 && (flags & events) == 0) continue;
+                if (filterSeed && reader.seed() != seed) continue;
+                if (reader.score() < minScore) continue;
+                if (matched++ < limit) {
+                    System.out.printf("seed=%d tick=%d input=%s head=%d,%d score=%d length=%d events=%s%s%n",
+                            reader.seed(), reader.tick(), reader.input(), reader.headX(), reader.headY(),
+                            reader.score(), reader.length(), describe(flags),
+                            (flags & ROCK) != 0 ? " rock=" + reader.rockX() + "," + reader.rockY() : "");
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("records=%d matched=%d deaths=%d foods=%d rocks=%d clean=%b (%.0f records/s)%n",
+                    records, matched, games, foods, rocks, reader.isClean(), records / Math.max(elapsed, 1e-9));
+        }
+    }
+
+    private static String describe(int flags) {
+        if (flags == 0) return "-";
+        StringBuilder out = new StringBuilder();
+        if ((flags & FOOD) != 0) out.append("food,");
+        if ((flags & SPECIAL_FOOD) != 0) out.append("special,");
+        if ((flags & ROCK) != 0) out.append("rock,");
+        if ((flags & DEATH) != 0) out.append("death,");
+        return out.substring(0, out.length() - 1);
+    }
+}
@@ -0,0 +1,63 @@
+package ta.tugasakhir;
+
+/**
+ * Writes one {@link TelemetryLog} record per engine tick. Call {@link #beforeTick()} right
+ * before the engine ticks and {@link #afterTick(boolean)} right after; the events of the tick
+ * - food eaten, a rock spawned, the snake dying - are read off the engine's counters in
+ * between, so the engine itself needs no hooks.
+ */
+public final class TelemetryRecorder {
+
+    private final TelemetryLog log;
+    private final GameEngine engine;
+
+    private Direction input;
+    private byte ahead;
+    private int foodsEaten;
+    private int rocks;
+
+    public TelemetryRecorder(TelemetryLog log, GameEngine engine) {
+        this.log = log;
+        this.engine = engine;
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public void beforeTick() {
+        input = engine.getNextDirection();
+        foodsEaten = engine.getFoodsEaten();
+        rocks = engine.getRockIndex().size();
+
+        int head = engine.getSnake().head();
+        int x = head % engine.getWidth() + input.dx;
+        int y = head / engine.getWidth() + input.dy;
+        Board board = engine.getBoard();
+        ahead = board.inBounds(x, y) ? board.get(x, y) : Board.EMPTY;
+    }
+
+    /**
+     * @param alive what the engine's tick returned
+     */
+    public void afterTick(boolean alive) {
+        int events = 0;
+        if (engine.getFoodsEaten() != foodsEaten) {
+            events |= ahead == Board.SPECIAL_FOOD ? TelemetryLog.SPECIAL_FOOD : TelemetryLog.FOOD;
+        }
+        int rockX = -1;
+        int rockY = -1;
+        if (engine.getRockIndex().size() != rocks) {
+            events |= TelemetryLog.ROCK;
+            rockX = engine.getLastRockCell() % engine.getWidth();
+            rockY = engine.getLastRockCell() / engine.getWidth();
+        }
+        if (!alive) {
+            events |= TelemetryLog.DEATH;
+        }
+
+        int head = engine.getSnake().head();
+        log.append(engine.getSeed(), engine.getTicks(), head % engine.getWidth(), head / engine.getWidth(),
+                engine.getScore(), engine.getSnake().size(), rockX, rockY, input, events);
+    }
+}
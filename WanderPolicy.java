@@ -0,0 +1,33 @@
+package ta.tugasakhir;
+
+/**
+ * Baseline bot: keeps going straight, occasionally turns at random, and never picks a move
+ * that collides if a safe one exists. Cheap enough not to dominate batch throughput.
+ */
+public final class WanderPolicy implements Policy {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final GameRandom random;
+    private final Direction[] safe = new Direction[DIRECTIONS.length];
+
+    public WanderPolicy(long seed) {
+        this.random = new GameRandom(seed);
+    }
+
+    @Override
+    public Direction nextDirection(GameEngine game) {
+        Direction current = game.getCurrentDirection();
+        if (!game.wouldCollide(current) && random.nextInt(10) != 0) {
+            return current;
+        }
+
+        int count = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (direction != current.opposite() && !game.wouldCollide(direction)) {
+                safe[count++] = direction;
+            }
+        }
+        return count == 0 ? current : safe[random.nextInt(count)];
+    }
+}
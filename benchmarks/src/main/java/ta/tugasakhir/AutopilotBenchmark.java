@@ -0,0 +1,52 @@
+package ta.tugasakhir;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Average cost of one autopilot decision plus the tick it drives, with and without the
+ * cached plan, as the board grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutopilotBenchmark {
+
+    @Param({"20", "128", "512"})
+    int size;
+
+    @Param({"true", "false"})
+    boolean cachePlans;
+
+    private GameEngine engine;
+    private Autopilot autopilot;
+
+    @Setup
+    public void setup() {
+        engine = new GameEngine(size, size, 42);
+        autopilot = new Autopilot(cachePlans);
+    }
+
+    @Benchmark
+    public boolean decideAndTick() {
+        if (engine.isGameOver()) {
+            engine.reset();
+        }
+        engine.steer(autopilot.nextDirection(engine));
+        return engine.tick();
+    }
+}
@@ -0,0 +1,72 @@
+package ta.tugasakhir;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checkCollision() and isValidPosition() as the snake gets longer. The snake is laid
+ * out as a serpentine over a 128x128 board and probed at a fixed pseudo-random cell sequence.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    private static final int BOARD = 128;
+    private static final int PROBES = 1024;
+
+    @Param({"16", "256", "4096", "16000"})
+    int length;
+
+    private GameEngine engine;
+    private final int[] probeX = new int[PROBES];
+    private final int[] probeY = new int[PROBES];
+    private int probe;
+
+    @Setup
+    public void setup() {
+        engine = new GameEngine(BOARD, BOARD, 42);
+
+        int[] cells = new int[length];
+        for (int i = 0; i < length; i++) {
+            int row = i / BOARD;
+            int column = row % 2 == 0 ? BOARD - 1 - i % BOARD : i % BOARD;
+            cells[length - 1 - i] = row * BOARD + column;
+        }
+        engine.placeSnake(cells, length);
+
+        GameRandom random = new GameRandom(7);
+        for (int i = 0; i < PROBES; i++) {
+            probeX[i] = random.nextInt(BOARD + 2) - 1;
+            probeY[i] = random.nextInt(BOARD + 2) - 1;
+        }
+    }
+
+    @Benchmark
+    public boolean checkCollision() {
+        int i = probe++ & (PROBES - 1);
+        return engine.checkCollision(probeX[i], probeY[i]);
+    }
+
+    @Benchmark
+    public boolean isValidPosition() {
+        int i = probe++ & (PROBES - 1);
+        int x = Math.floorMod(probeX[i], BOARD);
+        int y = Math.floorMod(probeY[i], BOARD);
+        return engine.isValidPosition(x, y);
+    }
+}
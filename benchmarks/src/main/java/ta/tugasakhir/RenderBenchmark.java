@@ -0,0 +1,66 @@
+package ta.tugasakhir;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of GameRenderer.drawGame() on an offscreen canvas that is never attached to a scene.
+ * This measures building the canvas command stream; it needs a JavaFX-capable display.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    private static final int CELL_SIZE = 28;
+
+    @Param({"3", "64", "250"})
+    int length;
+
+    private GameEngine engine;
+    private GameRenderer renderer;
+
+    @Setup
+    public void setup() {
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException alreadyStarted) {
+            // toolkit is shared between benchmark states in the same fork
+        }
+
+        int width = 20;
+        int height = 15;
+        engine = new GameEngine(width, height, 42);
+
+        int[] cells = new int[length];
+        for (int i = 0; i < length; i++) {
+            int row = i / width;
+            int column = row % 2 == 0 ? width - 1 - i % width : i % width;
+            cells[length - 1 - i] = row * width + column;
+        }
+        engine.placeSnake(cells, length);
+
+        renderer = new GameRenderer(new Canvas(width * CELL_SIZE, height * CELL_SIZE), CELL_SIZE);
+    }
+
+    @Benchmark
+    public void drawGame() {
+        renderer.drawGame(engine);
+    }
+}
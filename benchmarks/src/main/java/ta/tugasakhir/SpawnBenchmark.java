@@ -0,0 +1,58 @@
+package ta.tugasakhir;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of picking a spawn cell at different board fill ratios. Each op places a food on a
+ * random free cell and clears it again, so the fill ratio stays constant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnBenchmark {
+
+    private static final int BOARD = 256;
+
+    @Param({"0.1", "0.5", "0.9", "0.99"})
+    double fill;
+
+    private Board board;
+    private GameRandom random;
+
+    @Setup
+    public void setup() {
+        board = new Board(BOARD, BOARD);
+        random = new GameRandom(42);
+
+        int blocked = (int) (BOARD * BOARD * fill);
+        for (int i = 0; i < blocked; i++) {
+            int cell = board.randomFreeCell(random);
+            board.set(cell % BOARD, cell / BOARD, Board.ROCK);
+        }
+    }
+
+    @Benchmark
+    public int spawn() {
+        int cell = board.randomFreeCell(random);
+        int x = cell % BOARD;
+        int y = cell / BOARD;
+        board.set(x, y, Board.FOOD);
+        board.set(x, y, Board.EMPTY);
+        return cell;
+    }
+}
@@ -0,0 +1,74 @@
+package ta.tugasakhir;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of GameEngine.tick() on boards of different sizes. The snake turns away from
+ * obstacles so games last long enough to measure steady-state ticks rather than resets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Param({"20", "64", "256"})
+    int size;
+
+    private GameEngine engine;
+
+    @Setup
+    public void setup() {
+        engine = new GameEngine(size, size, 42);
+    }
+
+    @Benchmark
+    public boolean tick() {
+        if (engine.isGameOver()) {
+            engine.reset();
+        }
+        steerAwayFromObstacles();
+        return engine.tick();
+    }
+
+    private void steerAwayFromObstacles() {
+        if (!blockedAhead(engine.getNextDirection())) return;
+
+        for (Direction direction : DIRECTIONS) {
+            if (!blockedAhead(direction)) {
+                engine.steer(direction);
+                return;
+            }
+        }
+    }
+
+    private boolean blockedAhead(Direction direction) {
+        int head = engine.getSnake().head();
+        int x = head % engine.getWidth();
+        int y = head / engine.getWidth();
+
+        switch (direction) {
+            case UP: y--; break;
+            case DOWN: y++; break;
+            case LEFT: x--; break;
+            case RIGHT: x++; break;
+        }
+        return engine.checkCollision(x, y);
+    }
+}
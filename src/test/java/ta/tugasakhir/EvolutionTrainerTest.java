@@ -0,0 +1,98 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EvolutionTrainerTest {
+
+    @TempDir
+    Path dir;
+
+    private static EvolutionTrainer.Settings settings(int threads) {
+        EvolutionTrainer.Settings settings = new EvolutionTrainer.Settings();
+        settings.hidden = 6;
+        settings.population = 24;
+        settings.gamesPerGenome = 2;
+        settings.maxTicks = 400;
+        settings.elites = 2;
+        settings.seed = 11;
+        settings.threads = threads;
+        return settings;
+    }
+
+    @Test
+    void threadCountDoesNotChangeTheRun() throws Exception {
+        EvolutionTrainer single = new EvolutionTrainer(settings(1));
+        EvolutionTrainer parallel = new EvolutionTrainer(settings(3));
+        try {
+            for (int generation = 0; generation < 2; generation++) {
+                EvolutionTrainer.Generation a = single.step();
+                EvolutionTrainer.Generation b = parallel.step();
+                assertArrayEquals(single.getFitness(), parallel.getFitness(), "generation " + generation);
+                assertEquals(a.bestScore, b.bestScore);
+                assertEquals(a.ticks, b.ticks);
+            }
+
+            Path one = dir.resolve("single");
+            Path three = dir.resolve("parallel");
+            single.checkpoint().save(one);
+            parallel.checkpoint().save(three);
+            assertEquals(-1, Files.mismatch(one, three), "checkpoints differ");
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void checkpointRoundTripsAndResumesTheSameRun() throws Exception {
+        EvolutionTrainer trainer = new EvolutionTrainer(settings(2));
+        EvolutionTrainer resumed = null;
+        try {
+            trainer.step();
+            EvolutionTrainer.Checkpoint saved = trainer.checkpoint();
+            Path file = dir.resolve(EvolutionTrainer.DEFAULT_CHECKPOINT);
+            saved.save(file);
+            assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+            EvolutionTrainer.Checkpoint loaded = EvolutionTrainer.Checkpoint.load(file);
+
+            assertEquals(saved.hidden, loaded.hidden);
+            assertEquals(saved.populationSize, loaded.populationSize);
+            assertEquals(saved.generation, loaded.generation);
+            assertEquals(saved.seed, loaded.seed);
+            assertEquals(saved.randomState, loaded.randomState);
+            assertEquals(saved.bestFitness, loaded.bestFitness);
+            assertArrayEquals(saved.best, loaded.best);
+            assertArrayEquals(saved.population, loaded.population);
+
+            EvolutionTrainer.Settings other = settings(1);
+            other.population = 99;
+            other.seed = 0;
+            resumed = EvolutionTrainer.resume(other, loaded);
+            assertEquals(1, resumed.getGeneration());
+            trainer.step();
+            resumed.step();
+            assertArrayEquals(trainer.getFitness(), resumed.getFitness());
+        } finally {
+            trainer.shutdown();
+            if (resumed != null) {
+                resumed.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void loadRejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("not-a-checkpoint");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> EvolutionTrainer.Checkpoint.load(file));
+    }
+}
@@ -0,0 +1,69 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class GameEngineTest {
+
+    /**
+     * Marks an autopilot game at many points along the way, wanders off for a short run with
+     * fresh spawns from each, and rewinds: the full state, free-cell order included, must be
+     * what it was.
+     */
+    @Test
+    void rewindRestoresTheMarkedState() {
+        playMarkingAndRewinding(new GameEngine(40, 30, 3));
+    }
+
+    /**
+     * The same on a board of many chunks with a high rock cap, so the rewound rocks are
+     * spread over the food and rock indexes.
+     */
+    @Test
+    void rewindRestoresALargeBoard() {
+        GameEngine engine = new GameEngine(200, 150, 8, 5000);
+        for (int i = 0; i < 500; i++) {
+            engine.spawnRock();
+        }
+        playMarkingAndRewinding(engine);
+    }
+
+    private static void playMarkingAndRewinding(GameEngine engine) {
+        Autopilot autopilot = new Autopilot();
+        WanderPolicy wander = new WanderPolicy(9);
+        GameRandom random = new GameRandom(17);
+        for (int round = 0; round < 300 && !engine.isGameOver(); round++) {
+            byte[] marked = state(engine);
+            engine.mark();
+            for (int run = 0; run < 3; run++) {
+                engine.reseed(random.nextLong());
+                for (int t = 0; t < 40 && engine.tick(); t++) {
+                    engine.steer(wander.nextDirection(engine));
+                }
+                engine.rewind();
+                assertArrayEquals(marked, state(engine), "round " + round + ", run " + run);
+            }
+            engine.steer(autopilot.nextDirection(engine));
+            engine.tick();
+        }
+    }
+
+    @Test
+    void resetDropsTheMark() {
+        GameEngine engine = new GameEngine(20, 15, 1);
+        engine.mark();
+        engine.reset(2);
+        assertThrows(IllegalStateException.class, engine::rewind);
+    }
+
+    private static byte[] state(GameEngine engine) {
+        ByteBuffer out = ByteBuffer.allocate(engine.stateSize());
+        engine.writeState(out);
+        assertEquals(out.capacity(), out.position());
+        return out.array();
+    }
+}
@@ -0,0 +1,159 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plays an arena over loopback with a few decoding clients. The server is stepped by hand
+ * on the test thread, so the arena can be compared with what the clients rebuilt from the
+ * frames without racing the server loop.
+ */
+class GameServerTest {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * A client that decodes every frame into a {@link RemoteGame}, steers at random and
+     * rejoins after dying.
+     */
+    private static final class Client {
+        final SocketChannel channel;
+        ByteBuffer input = ByteBuffer.allocate(1 << 12);
+        RemoteGame game;
+        int resyncs;
+
+        Client(InetSocketAddress address) throws IOException {
+            channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+        }
+
+        void send(byte op, int argument) throws IOException {
+            ByteBuffer output = ByteBuffer.allocate(2).put(op).put((byte) argument).flip();
+            while (output.hasRemaining()) {
+                channel.write(output);
+            }
+        }
+
+        void receive(GameRandom random) throws IOException {
+            if (channel.read(input) < 0) throw new IOException("Server closed the connection");
+            input.flip();
+            while (input.remaining() >= 4) {
+                int length = input.getInt(input.position());
+                if (input.remaining() < 4 + length) {
+                    if (4 + length > input.capacity()) {
+                        input = ByteBuffer.allocate(Integer.highestOneBit(4 + length) * 2).put(input).flip();
+                        continue;
+                    }
+                    break;
+                }
+                int next = input.position() + 4 + length;
+                input.position(input.position() + 4);
+                handle(input.slice().limit(length), random);
+                input.position(next);
+            }
+            input.compact();
+        }
+
+        private void handle(ByteBuffer frame, GameRandom random) throws IOException {
+            byte type = frame.get();
+            if (type == NetProtocol.FRAME_WELCOME) {
+                game = new RemoteGame(NetProtocol.getVarInt(frame), NetProtocol.getVarInt(frame),
+                        NetProtocol.getVarInt(frame), NetProtocol.getVarInt(frame));
+                send(NetProtocol.OP_JOIN, 0);
+                return;
+            }
+            if (!game.apply(type, frame)) {
+                resyncs++;
+                send(NetProtocol.OP_RESYNC, 0);
+            }
+            if (type == NetProtocol.FRAME_DELTA && random != null) {
+                if (!game.isAlive(game.getPlayerId())) {
+                    send(NetProtocol.OP_JOIN, 0);
+                } else if (random.nextInt(3) == 0) {
+                    send(NetProtocol.OP_STEER, random.nextInt(DIRECTIONS.length));
+                }
+            }
+        }
+    }
+
+    @Test
+    void clientsMirrorTheArenaOverLoopback() throws IOException {
+        Arena arena = new Arena(32, 24, 8, 40, 7, 1234);
+        List<Client> clients = new ArrayList<>();
+        GameRandom random = new GameRandom(99);
+        try (GameServer server = new GameServer(arena, new InetSocketAddress("127.0.0.1", 0), 10)) {
+            InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+            for (int i = 0; i < 4; i++) {
+                clients.add(new Client(address));
+            }
+            while (server.getConnectionCount() < clients.size()) {
+                server.poll(10);
+            }
+
+            for (int tick = 0; tick < 500; tick++) {
+                server.poll(0);
+                server.tick();
+                for (Client client : clients) {
+                    client.receive(random);
+                }
+            }
+
+            // every frame of the last tick has been written; wait until each client has it
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            for (Client client : clients) {
+                while (client.game.getTick() != arena.getTicks() && System.nanoTime() < deadline) {
+                    client.receive(null);
+                }
+            }
+
+            for (Client client : clients) {
+                assertEquals(0, client.resyncs);
+                assertTrue(client.game.isSynced());
+                assertEquals(arena.getTicks(), client.game.getTick());
+                assertMirrors(arena, client.game);
+            }
+        } finally {
+            for (Client client : clients) {
+                client.channel.close();
+            }
+        }
+    }
+
+    private static void assertMirrors(Arena arena, RemoteGame game) {
+        Board expected = arena.getBoard();
+        Board actual = game.getBoard();
+        for (int y = 0; y < expected.height; y++) {
+            for (int x = 0; x < expected.width; x++) {
+                assertEquals(expected.get(x, y), actual.get(x, y), "cell " + x + "," + y);
+            }
+        }
+
+        int live = 0;
+        for (int id = 0; id < arena.getMaxPlayers(); id++) {
+            assertEquals(arena.isAlive(id), game.isAlive(id), "player " + id);
+            if (!arena.isAlive(id)) continue;
+            live++;
+
+            assertEquals(arena.getScore(id), game.getScore(id), "score of " + id);
+            SnakeBody snake = arena.getSnake(id);
+            SnakeBody mirror = game.getSnake(id);
+            assertNotNull(mirror);
+            assertEquals(snake.size(), mirror.size(), "length of " + id);
+            for (int i = 0; i < snake.size(); i++) {
+                assertEquals(snake.get(i), mirror.get(i), "cell " + i + " of " + id);
+            }
+            assertEquals(arena.getDirection(id), game.getHeadDirection(snake.head()));
+        }
+        assertTrue(live > 0, "nobody was playing");
+    }
+}
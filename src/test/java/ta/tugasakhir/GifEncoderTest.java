@@ -0,0 +1,128 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.jupiter.api.Test;
+
+class GifEncoderTest {
+
+    /**
+     * A colour cube of 32768 shades from 64 to 255, far more than a palette holds. Every
+     * channel range straddles 128, where a signed sort on the channel would wrap around and
+     * leave boxes that mix far-apart colours; that build misses by 33 here.
+     */
+    @Test
+    void paletteCoversAGradientEvenly() {
+        int[] gradient = new int[32 * 32 * 32];
+        int at = 0;
+        for (int r = 64; r < 256; r += 6) {
+            for (int g = 64; g < 256; g += 6) {
+                for (int b = 64; b < 256; b += 6) {
+                    gradient[at++] = 0xFF000000 | r << 16 | g << 8 | b;
+                }
+            }
+        }
+        int[] palette = GifEncoder.buildPalette(new int[][] {gradient});
+
+        int worst = 0;
+        for (int color : gradient) {
+            int nearest = Integer.MAX_VALUE;
+            for (int entry : palette) {
+                nearest = Math.min(nearest, maxChannelError(color, entry));
+            }
+            worst = Math.max(worst, nearest);
+        }
+        // 128 shades a box, about 5 steps of 6 on a side: the far corners end up 21 off
+        assertTrue(worst <= 24, "worst channel error " + worst);
+    }
+
+    @Test
+    void fewColoursAreKeptExactly() {
+        int[] tile = new int[64];
+        for (int i = 0; i < tile.length; i++) {
+            tile[i] = 0xFF000000 | (i * 4) << 16 | (255 - i * 4);
+        }
+        int[] palette = GifEncoder.buildPalette(new int[][] {tile});
+        for (int color : tile) {
+            int nearest = Integer.MAX_VALUE;
+            for (int entry : palette) {
+                nearest = Math.min(nearest, maxChannelError(color, entry));
+            }
+            assertEquals(0, nearest);
+        }
+    }
+
+    /**
+     * Encodes a few frames from synthetic sprites and reads them back with ImageIO's GIF
+     * decoder: every pixel must be the palette colour of the index the frame was drawn with.
+     */
+    @Test
+    void framesDecodeToTheirIndexedPixels() throws IOException {
+        int cellSize = 8;
+        int[][] sprites = new int[OffscreenRenderer.KINDS * 2][];
+        for (int kind = 1; kind < OffscreenRenderer.KINDS; kind++) {
+            for (int parity = 0; parity < 2; parity++) {
+                int[] sprite = new int[cellSize * cellSize];
+                for (int i = 0; i < sprite.length; i++) {
+                    int alpha = i % 3 == 0 ? 0 : 255 - i;
+                    sprite[i] = alpha << 24 | (kind * 23 + i) << 16 & 0xFF0000 | (i * 4) << 8 & 0xFF00 | kind * 17;
+                }
+                sprites[kind * 2 + parity] = sprite;
+            }
+        }
+        OffscreenRenderer renderer = new OffscreenRenderer(cellSize, 12, 9, sprites);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GifEncoder encoder = new GifEncoder(bytes, renderer, 10);
+        GameRandom random = new GameRandom(5);
+        OffscreenRenderer.Frame[] frames = new OffscreenRenderer.Frame[6];
+        for (int f = 0; f < frames.length; f++) {
+            OffscreenRenderer.Frame frame = renderer.newFrame();
+            for (int i = 0; i < frame.kinds.length; i++) {
+                // long runs of grass as well as noise, so LZW both grows and resets its table
+                frame.kinds[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(OffscreenRenderer.KINDS) : 0);
+            }
+            frame.parity = f & 1;
+            frames[f] = frame;
+            encoder.write(encoder.encode(frame, f));
+        }
+        encoder.close();
+
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            reader.setInput(in);
+            assertEquals(frames.length, reader.getNumImages(true));
+            byte[] expected = new byte[renderer.width * renderer.height];
+            for (int f = 0; f < frames.length; f++) {
+                renderer.render(frames[f], encoder.indexedTiles, expected);
+                BufferedImage image = reader.read(f);
+                assertEquals(renderer.width, image.getWidth());
+                assertEquals(renderer.height, image.getHeight());
+                for (int y = 0; y < renderer.height; y++) {
+                    for (int x = 0; x < renderer.width; x++) {
+                        int color = encoder.palette[expected[y * renderer.width + x] & 0xFF];
+                        assertEquals(0xFF000000 | color, image.getRGB(x, y), "frame " + f + " at " + x + "," + y);
+                    }
+                }
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static int maxChannelError(int a, int b) {
+        int error = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            error = Math.max(error, Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)));
+        }
+        return error;
+    }
+}
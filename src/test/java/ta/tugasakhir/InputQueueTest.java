@@ -0,0 +1,109 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class InputQueueTest {
+
+    /**
+     * UP then LEFT pressed within one tick of a snake heading right: the game loop, polling
+     * once per tick as SnakeGame does, turns up on the first tick and left on the next.
+     */
+    @Test
+    void twoPressesInOneTickTurnOnConsecutiveTicks() {
+        GameEngine engine = new GameEngine(20, 15, 4);
+        InputQueue input = new InputQueue();
+        int head = engine.getSnake().head();
+
+        input.offer(Direction.UP, 100);
+        input.offer(Direction.LEFT, 110);
+
+        tick(engine, input, 200);
+        assertEquals(Direction.UP, engine.getCurrentDirection());
+        assertEquals(head - engine.getWidth(), engine.getSnake().head());
+        assertEquals(100, input.getLastLatencyNanos());
+
+        tick(engine, input, 300);
+        assertEquals(Direction.LEFT, engine.getCurrentDirection());
+        assertEquals(head - engine.getWidth() - 1, engine.getSnake().head());
+        assertEquals(190, input.getLastLatencyNanos());
+
+        tick(engine, input, 400);
+        assertEquals(Direction.LEFT, engine.getCurrentDirection());
+    }
+
+    /**
+     * Presses are judged against the direction applied on the last tick. After UP is applied,
+     * DOWN is a reversal and UP a repeat, both dropped; LEFT, which reverses the original
+     * heading but not the applied one, is taken.
+     */
+    @Test
+    void repeatsAndReversalsOfTheAppliedDirectionAreDropped() {
+        InputQueue input = new InputQueue();
+        input.offer(Direction.UP, 0);
+        assertEquals(Direction.UP, input.poll(Direction.RIGHT, 0));
+
+        input.offer(Direction.DOWN, 0);
+        input.offer(Direction.UP, 0);
+        input.offer(Direction.LEFT, 0);
+        input.offer(Direction.DOWN, 0);
+        assertEquals(Direction.LEFT, input.poll(Direction.UP, 0));
+        // DOWN turns away from LEFT, the direction now applied
+        assertEquals(Direction.DOWN, input.poll(Direction.LEFT, 0));
+        assertNull(input.poll(Direction.DOWN, 0));
+
+        input.offer(Direction.RIGHT, 0);
+        input.offer(Direction.RIGHT, 0);
+        assertNull(input.poll(Direction.RIGHT, 0), "only repeats queued");
+        assertNull(input.poll(Direction.RIGHT, 0), "the repeats are gone");
+    }
+
+    /**
+     * A full ring refuses new presses and keeps the old ones, in order, rather than
+     * overwriting them.
+     */
+    @Test
+    void fullQueueDropsNewPresses() {
+        InputQueue input = new InputQueue(4);
+        Direction[] pattern = {Direction.UP, Direction.LEFT, Direction.DOWN, Direction.RIGHT};
+        for (Direction direction : pattern) {
+            assertTrue(input.offer(direction, 0));
+        }
+        assertFalse(input.offer(Direction.UP, 0));
+        assertFalse(input.offer(Direction.LEFT, 0));
+        assertEquals(2, input.getDropped());
+
+        Direction current = Direction.RIGHT;
+        for (Direction direction : pattern) {
+            current = input.poll(current, 0);
+            assertEquals(direction, current);
+        }
+        assertNull(input.poll(current, 0));
+
+        // room again once the consumer has caught up
+        assertTrue(input.offer(Direction.UP, 0));
+        assertEquals(Direction.UP, input.poll(Direction.RIGHT, 0));
+    }
+
+    @Test
+    void capacityRoundsUpToAPowerOfTwo() {
+        InputQueue input = new InputQueue(5);
+        int accepted = 0;
+        while (accepted < 100 && input.offer(Direction.UP, 0)) {
+            accepted++;
+        }
+        assertEquals(8, accepted);
+    }
+
+    private static void tick(GameEngine engine, InputQueue input, long nanos) {
+        Direction turn = input.poll(engine.getCurrentDirection(), nanos);
+        if (turn != null) {
+            engine.steer(turn);
+        }
+        assertTrue(engine.tick());
+    }
+}
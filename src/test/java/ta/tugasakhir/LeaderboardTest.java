@@ -0,0 +1,135 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LeaderboardTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Scores from a small range, so there are plenty of ties, checked against a plain sorted
+     * list: ranks as entries go in, then the top entries and ranks again after reopening,
+     * which indexes the file in one bulk build, and after more inserts into that tree.
+     */
+    @Test
+    void ranksAndTopMatchASortedList() throws IOException {
+        Path file = dir.resolve("scores");
+        GameRandom random = new GameRandom(21);
+        List<long[]> oracle = new ArrayList<>();
+
+        try (Leaderboard leaderboard = Leaderboard.open(file)) {
+            for (int i = 0; i < 3000; i++) {
+                int score = random.nextInt(200) * 10;
+                assertEquals(expectedRank(oracle, score), leaderboard.rank(score));
+                assertEquals(expectedRank(oracle, score), leaderboard.add(score, 3 + i % 40, i * 7L, i, 1000L + i),
+                        "adding entry " + i);
+                oracle.add(new long[] {score, i});
+            }
+            assertTop(oracle, leaderboard, 25);
+        }
+
+        try (Leaderboard leaderboard = Leaderboard.open(file)) {
+            assertEquals(oracle.size(), leaderboard.size());
+            assertTop(oracle, leaderboard, 50);
+            for (int score = -10; score <= 2000; score += 5) {
+                assertEquals(expectedRank(oracle, score), leaderboard.rank(score), "score " + score);
+            }
+            for (int i = 3000; i < 4000; i++) {
+                int score = random.nextInt(200) * 10;
+                assertEquals(expectedRank(oracle, score), leaderboard.add(score, 3 + i % 40, i * 7L, i, 1000L + i),
+                        "adding entry " + i + " after reopening");
+                oracle.add(new long[] {score, i});
+            }
+            assertTop(oracle, leaderboard, oracle.size());
+        }
+    }
+
+    @Test
+    void reopeningDropsACorruptLastRecord() throws IOException {
+        Path file = dir.resolve("scores");
+        try (Leaderboard leaderboard = Leaderboard.open(file)) {
+            for (int i = 0; i < 10; i++) {
+                leaderboard.add(100 * i, 3, 1000, i, 0);
+            }
+        }
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // the best score, so a record read past its checksum would show up at the top
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), intact - Leaderboard.RECORD_SIZE);
+        }
+
+        try (Leaderboard leaderboard = Leaderboard.open(file)) {
+            assertEquals(9, leaderboard.size());
+            assertEquals(800, leaderboard.bestScore());
+            assertEquals(intact - Leaderboard.RECORD_SIZE, Files.size(file));
+            assertEquals(1, leaderboard.add(2000, 3, 1000, 10, 0));
+        }
+        try (Leaderboard leaderboard = Leaderboard.open(file)) {
+            assertEquals(10, leaderboard.size());
+            assertEquals(10, leaderboard.top(1).get(0).seed);
+        }
+    }
+
+    @Test
+    void reopeningDropsATornTail() throws IOException {
+        Path file = dir.resolve("scores");
+        try (Leaderboard leaderboard = Leaderboard.open(file)) {
+            for (int i = 0; i < 5; i++) {
+                leaderboard.add(10 * i, 3, 1000, i, 0);
+            }
+        }
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Leaderboard.RECORD_SIZE / 2), intact);
+        }
+
+        try (Leaderboard leaderboard = Leaderboard.open(file)) {
+            assertEquals(5, leaderboard.size());
+            assertEquals(intact, Files.size(file));
+            assertEquals(40, leaderboard.bestScore());
+        }
+    }
+
+    /**
+     * Entries with at least this score, which all rank ahead of it, plus one.
+     */
+    private static int expectedRank(List<long[]> oracle, int score) {
+        int ahead = 0;
+        for (long[] entry : oracle) {
+            if (entry[0] >= score) ahead++;
+        }
+        return ahead + 1;
+    }
+
+    private static void assertTop(List<long[]> oracle, Leaderboard leaderboard, int k) throws IOException {
+        List<long[]> sorted = new ArrayList<>(oracle);
+        // best first, older first among equals; the list is in insertion order
+        sorted.sort(Comparator.comparingLong((long[] entry) -> -entry[0]).thenComparingLong(entry -> entry[1]));
+        List<Leaderboard.Entry> top = leaderboard.top(k);
+        assertEquals(Math.min(k, sorted.size()), top.size());
+        for (int i = 0; i < top.size(); i++) {
+            Leaderboard.Entry entry = top.get(i);
+            long id = sorted.get(i)[1];
+            String at = "rank " + (i + 1);
+            assertEquals(i + 1, entry.rank, at);
+            assertEquals(sorted.get(i)[0], entry.score, at);
+            assertEquals(id, entry.seed, at);
+            assertEquals(3 + id % 40, entry.length, at);
+            assertEquals(id * 7, entry.durationMillis, at);
+            assertEquals(1000 + id, entry.date, at);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+    @Test
+    void stopUnregistersOnlyTheCurrentMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+
+        Metrics first = new Metrics();
+        first.start(60_000, null);
+        first.registerMBean();
+        assertTrue(server.isRegistered(name));
+
+        Metrics second = new Metrics();
+        second.registerMBean();
+        first.stop();
+        assertTrue(server.isRegistered(name), "stopping a replaced instance removed its successor");
+
+        second.stop();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    void stopWithoutRegisteringLeavesJmxAlone() throws JMException {
+        Metrics metrics = new Metrics();
+        metrics.stop();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(Metrics.OBJECT_NAME)));
+    }
+}
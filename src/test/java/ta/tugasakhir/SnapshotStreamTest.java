@@ -0,0 +1,93 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SnapshotStreamTest {
+
+    /**
+     * Plays several games through a {@link SnapshotWriter}, with keyframes every 50 ticks and
+     * after each reset, then replays the stream and compares the reader's engine with the
+     * original after every tick.
+     */
+    @Test
+    void readerReplaysTheWrittenGameTickByTick() throws IOException {
+        GameEngine engine = new GameEngine(24, 18, 7);
+        Autopilot autopilot = new Autopilot();
+        WanderPolicy wander = new WanderPolicy(3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<String> states = new ArrayList<>();
+
+        SnapshotWriter writer = new SnapshotWriter(engine, Channels.newChannel(bytes), 50);
+        for (int game = 0; game < 4; game++) {
+            if (game > 0) {
+                engine.reset(1000 + game);
+            }
+            // mix in some wandering so the snake turns at odd moments, not only along plans
+            Policy policy = game % 2 == 0 ? autopilot : wander;
+            while (engine.getTicks() < 1500) {
+                engine.steer(policy.nextDirection(engine));
+                boolean alive = writer.tick();
+                states.add(describe(engine));
+                if (!alive) break;
+            }
+        }
+        writer.close();
+        assertTrue(writer.getKeyframes() > 4, "expected periodic keyframes");
+
+        SnapshotReader reader = new SnapshotReader(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        for (int i = 0; i < states.size(); i++) {
+            assertTrue(reader.step(), "stream ended after " + i + " of " + states.size() + " ticks");
+            assertEquals(states.get(i), describe(reader.getEngine()), "after tick " + i);
+        }
+        assertFalse(reader.step());
+        assertTrue(reader.isFinished());
+    }
+
+    /**
+     * Everything that decides how the game goes on: tick, score, directions, generator
+     * state, snake cells in order, and the foods and rocks in cell order.
+     */
+    private static String describe(GameEngine engine) {
+        ByteBuffer state = ByteBuffer.allocate(engine.stateSize());
+        engine.writeState(state);
+        long randomState = state.getLong(Long.BYTES);
+
+        StringBuilder out = new StringBuilder();
+        out.append("tick=").append(engine.getTicks())
+                .append(" score=").append(engine.getScore())
+                .append(" over=").append(engine.isGameOver())
+                .append(" direction=").append(engine.getCurrentDirection())
+                .append(" random=").append(randomState)
+                .append(" snake=");
+        SnakeBody snake = engine.getSnake();
+        for (int i = 0; i < snake.size(); i++) {
+            out.append(snake.get(i)).append(',');
+        }
+        out.append(" foods=").append(cells(engine, engine.getFoods(), true));
+        out.append(" rocks=").append(cells(engine, engine.getRocks(), false));
+        return out.toString();
+    }
+
+    private static String cells(GameEngine engine, List<Point> points, boolean withPoints) {
+        String[] cells = new String[points.size()];
+        for (int i = 0; i < cells.length; i++) {
+            Point point = points.get(i);
+            int cell = point.y * engine.getWidth() + point.x;
+            cells[i] = withPoints ? cell + (point.special ? "*" : "") + ":" + point.points : String.valueOf(cell);
+        }
+        Arrays.sort(cells);
+        return String.join(",", cells);
+    }
+}
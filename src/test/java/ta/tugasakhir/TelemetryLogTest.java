@@ -0,0 +1,161 @@
+package ta.tugasakhir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TelemetryLogTest {
+
+    private static final int THREADS = 4;
+    private static final int PER_THREAD = 20_000;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Several threads append into 64-record segments while the flusher runs every
+     * millisecond, so slots are reserved across segment boundaries and segments are released
+     * while slow appenders may still be writing them. Every record must come back intact.
+     */
+    @Test
+    void concurrentAppendsAcrossSegmentsAllSurvive() throws Exception {
+        Path file = dir.resolve("log");
+        TelemetryLog log = TelemetryLog.create(file, 1, 6);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < PER_THREAD; i++) {
+                    append(log, thread, i);
+                    if (i % 1000 == 0) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        boolean[][] seen = new boolean[THREADS][PER_THREAD];
+        long records = 0;
+        try (TelemetryLog.Reader reader = new TelemetryLog.Reader(file)) {
+            assertTrue(reader.isClean());
+            while (reader.next()) {
+                records++;
+                int thread = (int) reader.seed();
+                int i = reader.tick();
+                assertFalse(seen[thread][i], "record " + thread + "/" + i + " twice");
+                seen[thread][i] = true;
+                assertRecord(reader, thread, i);
+            }
+        }
+        assertEquals((long) THREADS * PER_THREAD, records);
+    }
+
+    /**
+     * A log left behind by a crash: not marked clean, a stale record count, a record whose
+     * flags byte never got written, a zeroed tail from a mapping that was grown but not filled
+     * and a last record cut off half way. Only the complete records are read.
+     */
+    @Test
+    void readerSkipsIncompleteRecordsAfterACrash() throws IOException {
+        Path file = dir.resolve("crashed");
+        TelemetryLog log = TelemetryLog.create(file, 60_000);
+        for (int i = 0; i < 100; i++) {
+            append(log, 0, i);
+        }
+        log.close();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // as the header looks while the log is still open, before the flusher caught up
+            channel.write(ByteBuffer.wrap(new byte[] {0}), 5);
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 10), 8);
+            channel.write(ByteBuffer.wrap(new byte[] {0}), recordAt(40) + TelemetryLog.EVENTS);
+            long end = channel.size();
+            channel.write(ByteBuffer.allocate(50 * TelemetryLog.RECORD_SIZE), end);
+            channel.truncate(recordAt(100) + 50L * TelemetryLog.RECORD_SIZE - 1);
+        }
+
+        List<Integer> ticks = new ArrayList<>();
+        try (TelemetryLog.Reader reader = new TelemetryLog.Reader(file)) {
+            assertFalse(reader.isClean());
+            while (reader.next()) {
+                assertRecord(reader, 0, reader.tick());
+                ticks.add(reader.tick());
+            }
+        }
+        assertEquals(99, ticks.size());
+        assertFalse(ticks.contains(40));
+        assertEquals(99, (int) ticks.get(ticks.size() - 1));
+    }
+
+    @Test
+    void readerStopsAtATornLastRecord() throws IOException {
+        Path file = dir.resolve("torn");
+        TelemetryLog log = TelemetryLog.create(file, 60_000);
+        for (int i = 0; i < 10; i++) {
+            append(log, 3, i);
+        }
+        log.close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0}), 5);
+            channel.truncate(recordAt(9) + TelemetryLog.EVENTS);
+        }
+
+        int records = 0;
+        try (TelemetryLog.Reader reader = new TelemetryLog.Reader(file)) {
+            while (reader.next()) {
+                assertRecord(reader, 3, records++);
+            }
+        }
+        assertEquals(9, records);
+    }
+
+    private static long recordAt(int index) {
+        return TelemetryLog.HEADER_SIZE + (long) index * TelemetryLog.RECORD_SIZE;
+    }
+
+    /**
+     * Every field derived from the writer and the sequence number, so a record written into
+     * the wrong slot or half written shows up.
+     */
+    private static void append(TelemetryLog log, int thread, int i) {
+        log.append(thread, i, i % 300, i % 200, i * 10, 3 + i % 50, i % 7 - 1, i % 11,
+                Direction.values()[(thread + i) % 4], i % 16);
+    }
+
+    private static void assertRecord(TelemetryLog.Reader reader, int thread, int i) {
+        String at = "record " + thread + "/" + i;
+        assertEquals(thread, reader.seed(), at);
+        assertEquals(i, reader.tick(), at);
+        assertEquals(i % 300, reader.headX(), at);
+        assertEquals(i % 200, reader.headY(), at);
+        assertEquals(i * 10, reader.score(), at);
+        assertEquals(3 + i % 50, reader.length(), at);
+        assertEquals(i % 7 - 1, reader.rockX(), at);
+        assertEquals(i % 11, reader.rockY(), at);
+        assertEquals(Direction.values()[(thread + i) % 4], reader.input(), at);
+        assertEquals(i % 16, reader.events(), at);
+    }
+}